@@ -0,0 +1,79 @@
+package com.nitin.json.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.JsonNode;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nitin.json.patch.BinaryPatchCodec;
+import com.nitin.json.patch.JsonPatch;
+
+/**
+ * Decoding of patches of 10, 100 and 1000 operations from their json text and from their binary
+ * form. The size of both forms is reported as the jsonBytes and binaryBytes counters, and setup fails if
+ * the binary form is not smaller than the json text.
+ *
+ * @author Nitin Patel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinaryPatchBenchmark {
+
+	@Param({"10", "100", "1000"})
+	public int operations;
+
+	private byte[] text;
+	private byte[] binary;
+
+	@Setup
+	public void setup() throws Exception {
+		JsonNode document = TopologyDocuments.topology(DocumentSize.medium.appservers, 1);
+		JsonPatch patch = new JsonPatch(TopologyDocuments.patch(document, operations, 2));
+		text = patch.toString().getBytes(StandardCharsets.UTF_8);
+		binary = BinaryPatchCodec.encode(patch);
+		if (binary.length >= text.length)
+			throw new IllegalStateException("Patch of "+operations+" operations is "+binary.length
+					+" bytes as binary, not smaller than "+text.length+" bytes as json");
+	}
+
+	/**
+	 * Sizes of the decoded patch, reported with the results. JMH resets the counters before every
+	 * iteration, so the benchmarks set them on every call.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Sizes {
+		public long jsonBytes;
+		public long binaryBytes;
+	}
+
+	@Benchmark
+	public JsonPatch decodeText(Sizes sizes) throws Exception {
+		sizes.jsonBytes = text.length;
+		sizes.binaryBytes = binary.length;
+		return new JsonPatch(text);
+	}
+
+	@Benchmark
+	public JsonPatch decodeBinary(Sizes sizes) throws Exception {
+		sizes.jsonBytes = text.length;
+		sizes.binaryBytes = binary.length;
+		return BinaryPatchCodec.decode(binary);
+	}
+}
@@ -0,0 +1,16 @@
+package com.nitin.json.benchmarks;
+
+/**
+ * Sizes of the generated topology documents, by number of app servers.
+ *
+ * @author Nitin Patel
+ */
+public enum DocumentSize {
+	small(3), medium(100), large(2000);
+
+	final int appservers;
+
+	DocumentSize(int appservers) {
+		this.appservers = appservers;
+	}
+}
@@ -0,0 +1,83 @@
+package com.nitin.json.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.JsonNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nitin.json.diff.DiffResult;
+import com.nitin.json.diff.JsonDiff;
+
+/**
+ * Diff of topology documents against an equal copy, a slightly different one (1% of the app
+ * servers changed) and a heavily different one (50% of the app servers changed), in full, bounded
+ * to ten operations, and as an equality check or a search of the first difference.
+ *
+ * @author Nitin Patel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonDiffBenchmark {
+
+	/**
+	 * Ratio of the app servers which differ between the two documents.
+	 */
+	public enum Change {
+		equal(0), slight(0.01), heavy(0.5);
+
+		final double ratio;
+
+		Change(double ratio) {
+			this.ratio = ratio;
+		}
+	}
+
+	@Param({"small", "medium", "large"})
+	public DocumentSize size;
+
+	@Param({"equal", "slight", "heavy"})
+	public Change change;
+
+	private JsonNode source;
+	private JsonNode other;
+
+	@Setup
+	public void setup() {
+		source = TopologyDocuments.topology(size.appservers, 1);
+		other = TopologyDocuments.mutate(source, change.ratio, 3);
+	}
+
+	@Benchmark
+	public JsonNode getDiff() {
+		return new JsonDiff().getDiff(source, other);
+	}
+
+	@Benchmark
+	public boolean isEqual() {
+		return new JsonDiff().isEqual(source, other);
+	}
+
+	@Benchmark
+	public String firstDifference() {
+		return new JsonDiff().firstDifference(source, other);
+	}
+
+	@Benchmark
+	public DiffResult getDiffOfTenOperations() {
+		return new JsonDiff().getDiff(source, other, 10);
+	}
+}
@@ -0,0 +1,54 @@
+package com.nitin.json.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.JsonNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nitin.json.patch.JsonPatch;
+import com.nitin.json.patch.exception.JsonPatchException;
+
+/**
+ * Application of patches of 1, 10 and 100 operations on small, medium and large topology
+ * documents. The source document is not modified, so every invocation patches the same input.
+ *
+ * @author Nitin Patel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonPatchBenchmark {
+
+	@Param({"small", "medium", "large"})
+	public DocumentSize size;
+
+	@Param({"1", "10", "100"})
+	public int operations;
+
+	private JsonNode document;
+	private JsonPatch patch;
+
+	@Setup
+	public void setup() throws Exception {
+		document = TopologyDocuments.topology(size.appservers, 1);
+		patch = new JsonPatch(TopologyDocuments.patch(document, operations, 2));
+	}
+
+	@Benchmark
+	public JsonNode apply() throws JsonPatchException {
+		return patch.apply(document);
+	}
+}
@@ -0,0 +1,67 @@
+package com.nitin.json.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.JsonNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nitin.json.pointer.JsonPointer;
+import com.nitin.json.pointer.exception.JsonPointerException;
+
+/**
+ * Evaluation of a json pointer at increasing depths of a medium topology document,
+ * with a compiled pointer and with a pointer parsed on every evaluation.
+ *
+ * @author Nitin Patel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonPointerBenchmark {
+
+	private static final String[] POINTERS = {
+		"/topology",
+		"/topology/appservers",
+		"/topology/appservers/42",
+		"/topology/appservers/42/protocols",
+		"/topology/appservers/42/protocols/1",
+		"/topology/appservers/42/protocols/1/port"
+	};
+
+	@Param({"1", "3", "6"})
+	public int depth;
+
+	private JsonNode document;
+	private String pointer;
+	private JsonPointer compiledPointer;
+
+	@Setup
+	public void setup() {
+		document = TopologyDocuments.topology(DocumentSize.medium.appservers, 1);
+		pointer = POINTERS[depth - 1];
+		compiledPointer = JsonPointer.compile(pointer);
+	}
+
+	@Benchmark
+	public JsonNode getValueCompiled() throws JsonPointerException {
+		return compiledPointer.getValue(document);
+	}
+
+	@Benchmark
+	public JsonNode getValueParsed() throws JsonPointerException {
+		return new JsonPointer(pointer).getValue(document);
+	}
+}
@@ -0,0 +1,66 @@
+package com.nitin.json.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.JsonNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.nitin.json.pointer.JsonPointer;
+import com.nitin.json.pointer.JsonPointerSet;
+import com.nitin.json.pointer.exception.JsonPointerException;
+
+/**
+ * Evaluation of 300 pointers sharing the "/topology/appservers/N" prefixes on a medium topology
+ * document, one pointer at a time and as a {@link JsonPointerSet}.
+ *
+ * @author Nitin Patel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonPointerSetBenchmark {
+
+	private JsonNode document;
+	private List<JsonPointer> pointers;
+	private JsonPointerSet pointerSet;
+
+	@Setup
+	public void setup() {
+		document = TopologyDocuments.topology(DocumentSize.medium.appservers, 1);
+		pointers = new ArrayList<JsonPointer>();
+		for (int i = 0; i < 100; i++) {
+			pointers.add(JsonPointer.compile("/topology/appservers/"+i+"/host"));
+			pointers.add(JsonPointer.compile("/topology/appservers/"+i+"/protocols/0/port"));
+			pointers.add(JsonPointer.compile("/topology/appservers/"+i+"/protocols/2/protocol"));
+		}
+		pointerSet = new JsonPointerSet(pointers);
+	}
+
+	@Benchmark
+	public void getValueEach(Blackhole blackhole) throws JsonPointerException {
+		for (JsonPointer pointer : pointers) {
+			blackhole.consume(pointer.getValue(document));
+		}
+	}
+
+	@Benchmark
+	public Map<JsonPointer, JsonNode> getValuesOfSet() {
+		return pointerSet.getValues(document);
+	}
+}
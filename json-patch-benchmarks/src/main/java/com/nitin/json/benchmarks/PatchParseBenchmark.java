@@ -0,0 +1,56 @@
+package com.nitin.json.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nitin.json.patch.JsonPatch;
+import com.nitin.json.patch.PatchCache;
+
+/**
+ * Parsing of patches of 1, 10 and 100 operations from their json text, directly and through a
+ * {@link PatchCache} which already holds them.
+ *
+ * @author Nitin Patel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatchParseBenchmark {
+
+	@Param({"1", "10", "100"})
+	public int operations;
+
+	private String patchText;
+	private PatchCache patchCache;
+
+	@Setup
+	public void setup() throws Exception {
+		patchText = TopologyDocuments.patch(TopologyDocuments.topology(DocumentSize.medium.appservers, 1), operations, 2).toString();
+		patchCache = new PatchCache(16);
+		patchCache.get(patchText);
+	}
+
+	@Benchmark
+	public JsonPatch parse() throws Exception {
+		return new JsonPatch(patchText);
+	}
+
+	@Benchmark
+	public JsonPatch parseCached() throws Exception {
+		return patchCache.get(patchText);
+	}
+}
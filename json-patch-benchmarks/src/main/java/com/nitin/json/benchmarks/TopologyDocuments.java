@@ -0,0 +1,119 @@
+package com.nitin.json.benchmarks;
+
+import java.util.Random;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.JsonNodeFactory;
+import org.codehaus.jackson.node.ObjectNode;
+
+import com.nitin.json.util.JsonNodeUtils;
+
+/**
+ * Synthetic documents shaped like the sample-topology.json test fixture: a load balancer,
+ * a list of web servers, and a list of app servers which each list their protocols.
+ * Documents are generated from a seed, so every run benchmarks the same input.
+ *
+ * @author Nitin Patel
+ */
+final class TopologyDocuments {
+
+	private static final String[] PROTOCOLS = {"http", "https", "t3", "t3s", "iiop"};
+
+	private TopologyDocuments() {
+	}
+
+	static ObjectNode topology(int appservers, long seed) {
+		Random random = new Random(seed);
+		ObjectNode topology = JsonNodeFactory.instance.objectNode();
+		ObjectNode lbr = topology.putObject("LBR");
+		lbr.put("host", "lbr.example.com");
+		lbr.put("port", "443");
+		lbr.put("protocol", "https");
+		ArrayNode webservers = topology.putArray("webservers");
+		for (int i = 0; i < Math.max(2, appservers / 10); i++) {
+			ObjectNode webserver = webservers.addObject();
+			webserver.put("host", "webhost"+(i + 1)+".example.com");
+			webserver.put("port", String.valueOf(8989 + i));
+			webserver.put("protocol", "http");
+		}
+		ArrayNode appserverArray = topology.putArray("appservers");
+		for (int i = 0; i < appservers; i++) {
+			ObjectNode appserver = appserverArray.addObject();
+			appserver.put("host", "producthost"+(i + 1)+".example.com");
+			ArrayNode protocols = appserver.putArray("protocols");
+			for (int p = 0; p < 3 + random.nextInt(3); p++) {
+				protocols.add(protocol(random));
+			}
+		}
+		ObjectNode document = JsonNodeFactory.instance.objectNode();
+		document.put("topology", topology);
+		return document;
+	}
+
+	/**
+	 * Returns a copy of the document where roughly the given ratio of the app servers is changed:
+	 * a port is replaced, and every other changed app server also gains and loses a protocol.
+	 */
+	static JsonNode mutate(JsonNode document, double ratio, long seed) {
+		Random random = new Random(seed);
+		JsonNode copy = JsonNodeUtils.deepCopy(document);
+		ArrayNode appservers = (ArrayNode)copy.get("topology").get("appservers");
+		for (int i = 0; i < appservers.size(); i++) {
+			if (random.nextDouble() >= ratio)
+				continue;
+			ArrayNode protocols = (ArrayNode)appservers.get(i).get("protocols");
+			((ObjectNode)protocols.get(random.nextInt(protocols.size()))).put("port", String.valueOf(9000 + random.nextInt(100)));
+			if (random.nextBoolean()) {
+				protocols.remove(random.nextInt(protocols.size()));
+				protocols.insert(random.nextInt(protocols.size() + 1), protocol(random));
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Returns a patch of the given number of operations which applies to the document: port
+	 * replacements, member additions, tests and copies, spread over the app servers.
+	 */
+	static ArrayNode patch(JsonNode document, int operations, long seed) {
+		Random random = new Random(seed);
+		JsonNode appservers = document.get("topology").get("appservers");
+		ArrayNode patch = JsonNodeFactory.instance.arrayNode();
+		for (int k = 0; k < operations; k++) {
+			int appserver = random.nextInt(appservers.size());
+			String appserverPtr = "/topology/appservers/"+appserver;
+			ObjectNode operation = patch.addObject();
+			switch (k % 4) {
+				case 0:
+					operation.put("op", "replace");
+					operation.put("path", appserverPtr+"/protocols/0/port");
+					operation.put("value", String.valueOf(9000 + random.nextInt(100)));
+					break;
+				case 1:
+					operation.put("op", "add");
+					operation.put("path", appserverPtr+"/tag");
+					operation.put("value", "tag"+k);
+					break;
+				case 2:
+					operation.put("op", "test");
+					operation.put("path", appserverPtr+"/host");
+					operation.put("value", appservers.get(appserver).get("host"));
+					break;
+				default:
+					operation.put("op", "copy");
+					operation.put("from", "/topology/LBR");
+					operation.put("path", appserverPtr+"/lbr");
+					break;
+			}
+		}
+		return patch;
+	}
+
+	private static ObjectNode protocol(Random random) {
+		ObjectNode protocol = JsonNodeFactory.instance.objectNode();
+		protocol.put("port", String.valueOf(9000 + random.nextInt(10)));
+		protocol.put("protocol", PROTOCOLS[random.nextInt(PROTOCOLS.length)]);
+		return protocol;
+	}
+}
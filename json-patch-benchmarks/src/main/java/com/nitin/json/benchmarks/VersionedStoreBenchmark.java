@@ -0,0 +1,95 @@
+package com.nitin.json.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.node.ObjectNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.nitin.json.patch.JsonPatch;
+import com.nitin.json.patch.exception.JsonPatchException;
+import com.nitin.json.store.VersionedStore;
+import com.nitin.json.store.exception.JsonStoreException;
+
+/**
+ * Versioned store of a topology document: appending a one operation patch, reading the latest
+ * version, and reading an old version, which replays up to a snapshot interval of patches.
+ *
+ * @author Nitin Patel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VersionedStoreBenchmark {
+
+	private static final String KEY = "topology";
+
+	@Param({"small", "medium", "large"})
+	public DocumentSize size;
+
+	private Path directory;
+	private VersionedStore store;
+	private JsonPatch patch;
+	private int oldVersion;
+
+	@Setup(Level.Iteration)
+	public void setup() throws IOException, JsonPatchException, JsonStoreException {
+		directory = Files.createTempDirectory("json-store");
+		store = new VersionedStore(directory);
+		ObjectNode topology = TopologyDocuments.topology(size.appservers, 1);
+		store.put(KEY, topology);
+		patch = new JsonPatch("[{\"op\": \"replace\", \"path\": \"/topology/LBR/port\", \"value\": \"8443\"}]");
+		//an old version is rebuilt from the snapshot before it and the patches after that snapshot
+		for (int i = 0; i < VersionedStore.DEFAULT_SNAPSHOT_INTERVAL * 3 / 2; i++) {
+			store.append(KEY, patch);
+		}
+		store.compact();
+		oldVersion = store.getLatestVersion(KEY);
+		for (int i = 0; i < VersionedStore.DEFAULT_SNAPSHOT_INTERVAL / 2; i++) {
+			store.append(KEY, patch);
+		}
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() throws IOException {
+		store.close();
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	@Benchmark
+	public int append() throws JsonPatchException, IOException, JsonStoreException {
+		return store.append(KEY, patch);
+	}
+
+	@Benchmark
+	public JsonNode getLatest() throws JsonStoreException {
+		return store.getLatest(KEY);
+	}
+
+	@Benchmark
+	public JsonNode getOldVersion() throws JsonStoreException {
+		return store.get(KEY, oldVersion);
+	}
+}
@@ -0,0 +1,363 @@
+package com.nitin.json.diff;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Computes a minimal edit script between two arrays, using their longest common subsequence.
+ *
+ * Elements are represented by ids, where equal elements have the same id, so comparing two
+ * elements is a single int compare. Common prefix and suffix are matched first, the LCS table
+ * is only built for the rest. Elements which are removed at one position and added back at
+ * another one become "move" edits, and the remaining removed/added elements between two
+ * common elements are paired up as modified elements, which are compared recursively.
+ * Arrays whose elements have an identity, e.g. a key member, are matched by identity instead.
+ *
+ * The indexes of the edits account for the edits before them, i.e. applying them in order,
+ * as patch operations, turns the source array into the target array.
+ */
+class ArrayDiff {
+
+	static final int MODIFY = 0, REMOVE = 1, ADD = 2, MOVE = 3;
+	private static final int KEEP = 4;
+
+	static class Edit {
+		final int type;
+		final int sourceIdx;
+		final int targetIdx;
+		//index the edit applies to, at the time it is applied
+		final int index;
+		//index the element is moved from, only for MOVE
+		final int from;
+
+		Edit(int type, int sourceIdx, int targetIdx, int index, int from) {
+			this.type = type;
+			this.sourceIdx = sourceIdx;
+			this.targetIdx = targetIdx;
+			this.index = index;
+			this.from = from;
+		}
+	}
+
+	private ArrayDiff() {
+	}
+
+	/*
+	 * Returns the edits which turn the source array into the target array, or null if the part
+	 * of the arrays which differs needs an LCS table larger than maxCells.
+	 */
+	static List<Edit> diff(int[] sourceIds, int[] targetIds, long maxCells) {
+		int n = sourceIds.length, m = targetIds.length;
+		int prefix = 0;
+		while (prefix < n && prefix < m && sourceIds[prefix] == targetIds[prefix])
+			prefix++;
+		int suffix = 0;
+		while (suffix < n - prefix && suffix < m - prefix
+				&& sourceIds[n - 1 - suffix] == targetIds[m - 1 - suffix])
+			suffix++;
+		int sn = n - prefix - suffix, tn = m - prefix - suffix;
+		if ((long)sn * tn > maxCells)
+			return null;
+
+		Script script = new Script(n + m);
+		for (int k = 0; k < prefix; k++)
+			script.add(KEEP, k, k);
+		if (sn > 0 && tn > 0) {
+			//lcs[i][j] is the LCS length of the middle parts of source from i and target from j
+			int width = tn + 1;
+			int[] lcs = new int[(sn + 1) * width];
+			for (int i = sn - 1; i >= 0; i--) {
+				for (int j = tn - 1; j >= 0; j--) {
+					lcs[i * width + j] = sourceIds[prefix + i] == targetIds[prefix + j] ?
+							lcs[(i + 1) * width + j + 1] + 1 :
+							Math.max(lcs[(i + 1) * width + j], lcs[i * width + j + 1]);
+				}
+			}
+			int i = 0, j = 0;
+			while (i < sn && j < tn) {
+				if (sourceIds[prefix + i] == targetIds[prefix + j]) {
+					script.add(KEEP, prefix + i++, prefix + j++);
+				} else if (lcs[(i + 1) * width + j] >= lcs[i * width + j + 1]) {
+					script.add(REMOVE, prefix + i++, -1);
+				} else {
+					script.add(ADD, -1, prefix + j++);
+				}
+			}
+			while (i < sn)
+				script.add(REMOVE, prefix + i++, -1);
+			while (j < tn)
+				script.add(ADD, -1, prefix + j++);
+		} else {
+			for (int i = 0; i < sn; i++)
+				script.add(REMOVE, prefix + i, -1);
+			for (int j = 0; j < tn; j++)
+				script.add(ADD, -1, prefix + j);
+		}
+		for (int k = 0; k < suffix; k++)
+			script.add(KEEP, n - suffix + k, m - suffix + k);
+		return toEdits(script, sourceIds, targetIds, true, true);
+	}
+
+	/*
+	 * Returns the edits which turn the source array into the target array, where elements are matched
+	 * by identity rather than by value: an id appears at most once in each array, and the elements with
+	 * the same id are the same element, possibly modified. The matched elements whose order is kept,
+	 * i.e. the longest increasing subsequence of their target indexes in source order, are modified in
+	 * place, the other matched elements are moved, and the elements which are not matched are removed
+	 * or added. No LCS table is needed, so this takes O(n log n) time.
+	 */
+	static List<Edit> diffMatched(int[] sourceIds, int[] targetIds) {
+		int n = sourceIds.length, m = targetIds.length;
+		Map<Integer, Integer> targetIndexes = new HashMap<Integer, Integer>(m * 4 / 3 + 1);
+		for (int j = 0; j < m; j++)
+			targetIndexes.put(targetIds[j], j);
+		//source and target index of the matched elements, in source order
+		int[] matchedSources = new int[n];
+		int[] matchedTargets = new int[n];
+		int count = 0;
+		for (int i = 0; i < n; i++) {
+			Integer j = targetIndexes.get(sourceIds[i]);
+			if (j != null) {
+				matchedSources[count] = i;
+				matchedTargets[count++] = j;
+			}
+		}
+		boolean[] inPlace = longestIncreasing(matchedTargets, count);
+
+		Script script = new Script(n + m);
+		int i = 0, j = 0;
+		for (int k = 0; k <= count; k++) {
+			if (k < count && !inPlace[k])
+				continue;
+			int nextSource = k < count ? matchedSources[k] : n;
+			int nextTarget = k < count ? matchedTargets[k] : m;
+			while (i < nextSource)
+				script.add(REMOVE, i++, -1);
+			while (j < nextTarget)
+				script.add(ADD, -1, j++);
+			if (k < count)
+				script.add(MODIFY, i++, j++);
+		}
+		return toEdits(script, sourceIds, targetIds, true, false);
+	}
+
+	/*
+	 * Marks the elements of the longest strictly increasing subsequence of the first count values,
+	 * using patience sorting.
+	 */
+	private static boolean[] longestIncreasing(int[] values, int count) {
+		//tails[l] is the element ending the increasing subsequence of length l+1 with the smallest last value
+		int[] tails = new int[count];
+		int[] previous = new int[count];
+		int length = 0;
+		for (int k = 0; k < count; k++) {
+			int low = 0, high = length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (values[tails[middle]] < values[k])
+					low = middle + 1;
+				else
+					high = middle;
+			}
+			previous[k] = low > 0 ? tails[low - 1] : -1;
+			tails[low] = k;
+			if (low == length)
+				length++;
+		}
+		boolean[] inSequence = new boolean[count];
+		for (int k = length > 0 ? tails[length - 1] : -1; k >= 0; k = previous[k])
+			inSequence[k] = true;
+		return inSequence;
+	}
+
+	/*
+	 * Turns a script of KEEP, MODIFY, REMOVE and ADD steps, in target order, into positioned edits.
+	 * When detectMoves is set, removed and added elements with the same id become moves. When
+	 * pairModified is set, the elements removed and added between two kept elements are paired
+	 * up as modified elements.
+	 */
+	static List<Edit> toEdits(Script script, int[] sourceIds, int[] targetIds, boolean detectMoves, boolean pairModified) {
+		int n = sourceIds.length, m = targetIds.length;
+		int[] moveSource = new int[m];
+		Arrays.fill(moveSource, -1);
+		boolean[] moved = new boolean[n];
+		if (detectMoves) {
+			Map<Integer, ArrayDeque<Integer>> removedById = new HashMap<Integer, ArrayDeque<Integer>>();
+			for (int k = 0; k < script.size; k++) {
+				if (script.types[k] == REMOVE) {
+					ArrayDeque<Integer> removed = removedById.get(sourceIds[script.sources[k]]);
+					if (removed == null) {
+						removed = new ArrayDeque<Integer>();
+						removedById.put(sourceIds[script.sources[k]], removed);
+					}
+					removed.add(script.sources[k]);
+				}
+			}
+			for (int k = 0; k < script.size; k++) {
+				if (script.types[k] == ADD) {
+					ArrayDeque<Integer> removed = removedById.get(targetIds[script.targets[k]]);
+					if (removed != null && !removed.isEmpty()) {
+						int sourceIdx = removed.poll();
+						moveSource[script.targets[k]] = sourceIdx;
+						moved[sourceIdx] = true;
+					}
+				}
+			}
+		}
+
+		//order the steps: within each run between two kept elements, added elements are paired
+		//with removed ones as modifications, in target order, and left over removals come last
+		Script steps = new Script(script.size);
+		ArrayDeque<Integer> gapRemovals = new ArrayDeque<Integer>();
+		List<Integer> gapAdditions = new ArrayList<Integer>();
+		for (int k = 0; k <= script.size; k++) {
+			if (k < script.size && script.types[k] == REMOVE) {
+				if (!moved[script.sources[k]])
+					gapRemovals.add(script.sources[k]);
+				continue;
+			}
+			if (k < script.size && script.types[k] == ADD) {
+				gapAdditions.add(script.targets[k]);
+				continue;
+			}
+			for (int targetIdx : gapAdditions) {
+				if (moveSource[targetIdx] >= 0)
+					steps.add(MOVE, moveSource[targetIdx], targetIdx);
+				else if (pairModified && !gapRemovals.isEmpty())
+					steps.add(MODIFY, gapRemovals.poll(), targetIdx);
+				else
+					steps.add(ADD, -1, targetIdx);
+			}
+			while (!gapRemovals.isEmpty())
+				steps.add(REMOVE, gapRemovals.poll(), -1);
+			gapAdditions.clear();
+			if (k < script.size)
+				steps.add(script.types[k], script.sources[k], script.targets[k]);
+		}
+		return position(steps, n, m);
+	}
+
+	/*
+	 * Computes the index of each step at the time it is applied.
+	 *
+	 * Every element which is ever part of the array while it is patched gets a slot: one per
+	 * source element, and one per added or moved-to target element. Added elements are inserted
+	 * right after the last element which reached its final place, so slots can be ordered upfront:
+	 * the slots of elements added after a kept or modified source element follow the slot of that
+	 * source element. The index of an element is then the number of occupied slots before it,
+	 * which a Fenwick tree gives in logarithmic time.
+	 */
+	private static List<Edit> position(Script steps, int n, int m) {
+		int[] anchor = new int[m];
+		int[] insertionsPerAnchor = new int[n + 1];
+		int lastFinal = -1;
+		for (int k = 0; k < steps.size; k++) {
+			int type = steps.types[k];
+			if (type == KEEP || type == MODIFY) {
+				lastFinal = steps.sources[k];
+			} else if (type == ADD || type == MOVE) {
+				anchor[steps.targets[k]] = lastFinal;
+				insertionsPerAnchor[lastFinal + 1]++;
+			}
+		}
+		//slot of each source element and of each inserted target element
+		int[] sourceSlot = new int[n];
+		int[] targetSlot = new int[m];
+		int[] nextInsertionSlot = new int[n + 1];
+		int slot = 0;
+		for (int a = -1; a < n; a++) {
+			if (a >= 0)
+				sourceSlot[a] = slot++;
+			nextInsertionSlot[a + 1] = slot;
+			slot += insertionsPerAnchor[a + 1];
+		}
+		for (int k = 0; k < steps.size; k++) {
+			if (steps.types[k] == ADD || steps.types[k] == MOVE) {
+				int targetIdx = steps.targets[k];
+				targetSlot[targetIdx] = nextInsertionSlot[anchor[targetIdx] + 1]++;
+			}
+		}
+
+		FenwickTree occupied = new FenwickTree(slot);
+		for (int i = 0; i < n; i++)
+			occupied.add(sourceSlot[i], 1);
+		List<Edit> edits = new ArrayList<Edit>();
+		for (int k = 0; k < steps.size; k++) {
+			int sourceIdx = steps.sources[k], targetIdx = steps.targets[k];
+			switch (steps.types[k]) {
+				case MODIFY:
+					edits.add(new Edit(MODIFY, sourceIdx, targetIdx, occupied.sumBefore(sourceSlot[sourceIdx]), -1));
+					break;
+				case REMOVE:
+					edits.add(new Edit(REMOVE, sourceIdx, -1, occupied.sumBefore(sourceSlot[sourceIdx]), -1));
+					occupied.add(sourceSlot[sourceIdx], -1);
+					break;
+				case ADD:
+					occupied.add(targetSlot[targetIdx], 1);
+					edits.add(new Edit(ADD, -1, targetIdx, occupied.sumBefore(targetSlot[targetIdx]), -1));
+					break;
+				case MOVE:
+					int from = occupied.sumBefore(sourceSlot[sourceIdx]);
+					occupied.add(sourceSlot[sourceIdx], -1);
+					occupied.add(targetSlot[targetIdx], 1);
+					int index = occupied.sumBefore(targetSlot[targetIdx]);
+					edits.add(new Edit(MOVE, sourceIdx, targetIdx, index, from));
+					break;
+				default:
+					break;
+			}
+		}
+		return edits;
+	}
+
+	/*
+	 * Sequence of steps, as parallel arrays of step type, source index and target index.
+	 */
+	static class Script {
+		int[] types, sources, targets;
+		int size;
+
+		Script(int capacity) {
+			types = new int[Math.max(capacity, 1)];
+			sources = new int[types.length];
+			targets = new int[types.length];
+		}
+
+		void add(int type, int sourceIdx, int targetIdx) {
+			if (size == types.length) {
+				types = Arrays.copyOf(types, size * 2);
+				sources = Arrays.copyOf(sources, size * 2);
+				targets = Arrays.copyOf(targets, size * 2);
+			}
+			types[size] = type;
+			sources[size] = sourceIdx;
+			targets[size] = targetIdx;
+			size++;
+		}
+	}
+
+	private static class FenwickTree {
+		private final int[] tree;
+
+		FenwickTree(int size) {
+			tree = new int[size + 1];
+		}
+
+		void add(int idx, int delta) {
+			for (int i = idx + 1; i < tree.length; i += i & -i)
+				tree[i] += delta;
+		}
+
+		//sum of the values at the indexes before idx
+		int sumBefore(int idx) {
+			int sum = 0;
+			for (int i = idx; i > 0; i -= i & -i)
+				sum += tree[i];
+			return sum;
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package com.nitin.json.diff;
+
+import org.codehaus.jackson.node.ArrayNode;
+
+/**
+ * Outcome of a diff bounded to a number of operations: the first operations of the diff, and
+ * whether the diff has more operations than these.
+ *
+ * @author Nitin Patel
+ * @see JsonDiff#getDiff(org.codehaus.jackson.JsonNode, org.codehaus.jackson.JsonNode, int)
+ */
+public class DiffResult {
+
+	private final ArrayNode diff;
+	private final boolean truncated;
+
+	DiffResult(ArrayNode diff, boolean truncated) {
+		this.diff = diff;
+		this.truncated = truncated;
+	}
+
+	/**
+	 * @return operations of the diff, in patch order. When the diff is truncated, they only turn
+	 * the source json part of the way into the other json.
+	 */
+	public ArrayNode getDiff() {
+		return diff;
+	}
+
+	/**
+	 * @return true if the diff was stopped at its maximum number of operations, and has more operations.
+	 */
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	@Override
+	public String toString() {
+		return truncated ? diff+" (truncated)" : String.valueOf(diff);
+	}
+}
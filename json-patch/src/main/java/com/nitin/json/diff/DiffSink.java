@@ -0,0 +1,54 @@
+package com.nitin.json.diff;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ObjectNode;
+
+import com.nitin.json.patch.vo.PatchOperation;
+import com.nitin.json.patch.vo.PatchOperationType;
+
+/**
+ * Receives the patch operations of a diff, one at a time and in patch order.
+ *
+ * @author Nitin Patel
+ */
+public interface DiffSink {
+
+	/**
+	 * @param operation - patch operation, e.g. {"op":"remove","path":"/a/0"}
+	 * @throws IOException if the operation cannot be written, which stops the diff.
+	 */
+	void add(ObjectNode operation) throws IOException;
+
+	/**
+	 * @param consumer - receives each operation as a {@link PatchOperation}.
+	 * @return sink which passes the operations to the given consumer.
+	 */
+	static DiffSink of(Consumer<PatchOperation> consumer) {
+		return operation -> consumer.accept(toPatchOperation(operation));
+	}
+
+	/**
+	 * @param generator - generator the operations are written to, as the elements of an array
+	 * which the caller starts and ends.
+	 * @return sink which writes the operations to the given generator.
+	 */
+	static DiffSink to(JsonGenerator generator) {
+		ObjectMapper mapper = new ObjectMapper();
+		return operation -> mapper.writeTree(generator, operation);
+	}
+
+	/**
+	 * Converts an operation of a diff, which is always valid, without validating it again.
+	 *
+	 * @param operation - patch operation, as passed to {@link #add(ObjectNode)}.
+	 * @return the same operation.
+	 */
+	static PatchOperation toPatchOperation(ObjectNode operation) {
+		return new PatchOperation(PatchOperationType.valueOf(operation.get("op").getTextValue()),
+				operation.get("path").getTextValue(), operation.path("from").getTextValue(), operation.get("value"));
+	}
+}
@@ -1,27 +1,183 @@
 package com.nitin.json.diff;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 
 import static com.nitin.json.util.LoggerUtils.*;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonParser;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.node.ArrayNode;
 import org.codehaus.jackson.node.JsonNodeFactory;
 import org.codehaus.jackson.node.ObjectNode;
 
+import com.nitin.json.metrics.PatchMetrics;
+import com.nitin.json.node.JsonNodeAdapter;
+import com.nitin.json.pointer.JsonPointer;
+import com.nitin.json.util.ByteBufferInputStream;
+import com.nitin.json.util.JsonNodeUtils;
+import com.nitin.json.util.MetricsUtils;
+
+/**
+ * Computes the json patch which turns a source json into another one.
+ *
+ * A JsonDiff keeps no state between diffs: once configured, one instance can be reused for any
+ * number of diffs and shared across threads. Each diff either returns its patch as an array, or
+ * passes its operations to a {@link DiffSink}.
+ *
+ * @author Nitin Patel
+ */
 public class JsonDiff {
+	/**
+	 * Default for {@link #setArrayDiffCutoff(long)}, which keeps the LCS table of an array diff under 4MB.
+	 */
+	public static final long DEFAULT_ARRAY_DIFF_CUTOFF = 1000000;
+	/**
+	 * Default for {@link #setParallelThreshold(int)}.
+	 */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 256;
     private static ObjectMapper mapper = new ObjectMapper();
-	private ArrayNode diff = JsonNodeFactory.instance.arrayNode();
+	private static final String WILDCARD = "*";
+	private long arrayDiffCutoff = DEFAULT_ARRAY_DIFF_CUTOFF;
+	private ForkJoinPool forkJoinPool;
+	private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+	private final Map<String, ArrayKey> arrayKeys = new LinkedHashMap<String, ArrayKey>();
+	private PathFilter pathFilter;
 
 	public JsonDiff() {
 		// TODO Auto-generated constructor stub
 	}
+
+	public ForkJoinPool getForkJoinPool() {
+		return forkJoinPool;
+	}
+
+	/**
+	 * Enables parallel diff: the children of objects and arrays which have at least
+	 * {@link #getParallelThreshold()} children are compared as fork/join tasks in the given pool.
+	 * The operations are merged in document order, so the diff is the same as the sequential one.
+	 * 
+	 * @param forkJoinPool - pool to run the comparisons in, e.g. {@link ForkJoinPool#commonPool()},
+	 * or null to compare sequentially, which is the default.
+	 */
+	public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+		this.forkJoinPool = forkJoinPool;
+	}
+
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	/**
+	 * @param parallelThreshold - minimum number of children of a container to compare them in parallel,
+	 * which is also the number of children compared by each task.
+	 */
+	public void setParallelThreshold(int parallelThreshold) {
+		this.parallelThreshold = Math.max(1, parallelThreshold);
+	}
+
+	public long getArrayDiffCutoff() {
+		return arrayDiffCutoff;
+	}
+
+	/**
+	 * Arrays are compared using their longest common subsequence, which results in the minimal
+	 * "add", "remove" and "move" operations. The LCS needs a table of (changed source elements) x
+	 * (changed target elements) cells. Above the given number of cells, arrays are compared
+	 * index by index instead.
+	 * 
+	 * @param arrayDiffCutoff - maximum number of cells of the LCS table, 0 to always compare by index.
+	 */
+	public void setArrayDiffCutoff(long arrayDiffCutoff) {
+		this.arrayDiffCutoff = arrayDiffCutoff;
+	}
+
+	/**
+	 * Matches the elements of the given arrays by the value of a key member instead of by value, e.g.
+	 * the servers of "/topology/appservers/*" by "name". A reordered element is then moved, and only
+	 * the elements with the same key are compared, so removing one element does not turn into a
+	 * modification of every element after it. Elements which are not objects, have no key member, or
+	 * repeat a key of their array are never matched. Keyed arrays do not need an LCS table, so the
+	 * {@link #setArrayDiffCutoff(long) cutoff} does not apply to them.
+	 * 
+	 * @param elementsPattern - json pointer of the elements of the arrays, where a "*" reference token
+	 * matches any token, e.g. "/topology/appservers/*" or "/topology/appservers/*&#47;protocols/*".
+	 * The pointer is matched against the paths of the diff.
+	 * @param keyMember - name of the member which identifies an element, or null to match the elements
+	 * of these arrays by value again.
+	 */
+	public void setArrayKey(String elementsPattern, String keyMember) {
+		JsonPointer pattern = JsonPointer.compile(elementsPattern);
+		if (pattern.isEmpty() || !WILDCARD.equals(pattern.getLastReferenceToken()))
+			throw new IllegalArgumentException("Json pointer \""+elementsPattern+"\" does not refer to the elements of an array");
+		if (keyMember == null)
+			arrayKeys.remove(elementsPattern);
+		else
+			arrayKeys.put(elementsPattern, new ArrayKey(pattern.parent(), keyMember));
+	}
+
+	public PathFilter getPathFilter() {
+		return pathFilter;
+	}
+
+	/**
+	 * Restricts the diff to the paths accepted by the given filter. The subtrees which are filtered out
+	 * are skipped as the documents are walked, so they cost nothing, and values which only differ there
+	 * are equal.
+	 * 
+	 * @param pathFilter - include and exclude patterns of the compared paths, or null to compare every
+	 * path, which is the default.
+	 */
+	public void setPathFilter(PathFilter pathFilter) {
+		this.pathFilter = pathFilter;
+	}
+
+	/**
+	 * @return key member of the arrays whose elements are matched by key, by pattern of their elements.
+	 */
+	public Map<String, String> getArrayKeys() {
+		Map<String, String> keys = new LinkedHashMap<String, String>();
+		for (Map.Entry<String, ArrayKey> arrayKey : arrayKeys.entrySet()) {
+			keys.put(arrayKey.getKey(), arrayKey.getValue().keyMember);
+		}
+		return keys;
+	}
+
+	/*
+	 * Returns the key member of the array at the given pointer, or null if it is matched by value.
+	 */
+	private String getArrayKey(String arrayPtr) {
+		if (arrayKeys.isEmpty())
+			return null;
+		JsonPointer ptr = JsonPointer.compile(arrayPtr);
+		for (ArrayKey arrayKey : arrayKeys.values()) {
+			if (arrayKey.matches(ptr))
+				return arrayKey.keyMember;
+		}
+		return null;
+	}
 	
 	public JsonNode getDiff(String sourceJson, String otherJson) {
+		JsonNode diff = JsonNodeFactory.instance.arrayNode();
         try {
-            getDiff(mapper.readTree(sourceJson), mapper.readTree(otherJson));
+            diff = getDiff(mapper.readTree(sourceJson), mapper.readTree(otherJson));
         } catch (IOException e) {
             String errorMsg = "Error while parsing the input json: "+e.getMessage();
             getLogger().log(Level.SEVERE, errorMsg, e);
@@ -29,70 +185,682 @@ public class JsonDiff {
         return diff;
     }
 	
+	/**
+	 * Diffs two json documents, which are parsed straight from their bytes.
+	 * 
+	 * @param sourceJson - source json, encoded in UTF-8, UTF-16 or UTF-32.
+	 * @param otherJson - other json, encoded in UTF-8, UTF-16 or UTF-32.
+	 * @return patch which turns the source into the other json.
+	 * @throws IOException if either json can not be parsed.
+	 */
+	public JsonNode getDiff(byte[] sourceJson, byte[] otherJson) throws IOException {
+		return getDiff(mapper.readTree(sourceJson), mapper.readTree(otherJson));
+	}
+
+	/**
+	 * Diffs the json documents in the remaining bytes of the given buffers, whose positions are not modified.
+	 * 
+	 * @see #getDiff(byte[], byte[])
+	 */
+	public JsonNode getDiff(ByteBuffer sourceJson, ByteBuffer otherJson) throws IOException {
+		return getDiff(mapper.readTree(JsonNodeUtils.createParser(mapper.getJsonFactory(), sourceJson)),
+				mapper.readTree(JsonNodeUtils.createParser(mapper.getJsonFactory(), otherJson)));
+	}
+
+	/**
+	 * Diffs the json documents read from the given streams, which are not closed.
+	 * 
+	 * @see #getDiff(byte[], byte[])
+	 */
+	public JsonNode getDiff(InputStream sourceJson, InputStream otherJson) throws IOException {
+		return getDiff(mapper.readTree(mapper.getJsonFactory().createJsonParser(sourceJson)),
+				mapper.readTree(mapper.getJsonFactory().createJsonParser(otherJson)));
+	}
+
+	/**
+	 * Diffs the json documents in the given files, which are memory-mapped while they are parsed.
+	 * 
+	 * @see #getDiff(byte[], byte[])
+	 */
+	public JsonNode getDiff(Path sourceJson, Path otherJson) throws IOException {
+		return getDiff(ByteBufferInputStream.map(sourceJson), ByteBufferInputStream.map(otherJson));
+	}
+	
 	public JsonNode getDiff(JsonNode sourceJson, JsonNode otherJson) {
-		compare(sourceJson, otherJson, "");
+		return getDiff(JsonFingerprint.of(sourceJson, pathFilter), JsonFingerprint.of(otherJson, pathFilter));
+	}
+	
+	/**
+	 * Diffs the document of the given fingerprint against the other json. The fingerprint can be
+	 * reused across calls, so that a baseline document is hashed only once.
+	 */
+	public JsonNode getDiff(JsonFingerprint source, JsonNode otherJson) {
+		return getDiff(source, JsonFingerprint.of(otherJson, pathFilter));
+	}
+	
+	/**
+	 * Diffs the documents of the given fingerprints. Subtrees with different fingerprints are
+	 * known to differ without comparing them, only subtrees with the same fingerprint are
+	 * compared for equality.
+	 */
+	public JsonNode getDiff(JsonFingerprint source, JsonFingerprint other) {
+		ArrayNode diff = JsonNodeFactory.instance.arrayNode();
+		try {
+			getDiff(source, other, diff::add);
+		} catch (IOException e) {
+			//adding to an array node does not fail
+			throw new UncheckedIOException(e);
+		}
 		return diff;
 	}
 
-	private void compare(JsonNode source, JsonNode target, String sourcePtr) {
-		if (source == null && target == null)
-			return;
-		if (source == null && target != null) {
-			//generate a diff which will be to replace entire source entry with target
-			getLogger().fine("Source is null\n source: "+source+"\n target: "+target+"\n");
-			ObjectNode addOp = JsonNodeFactory.instance.objectNode();
-			addOp.put("op", "add");
-			addOp.put("path", sourcePtr);
-			addOp.put("value", target);
-
-			diff.add(addOp);
+	/**
+	 * Diffs two json documents, and passes each operation to the sink as soon as it is found, so
+	 * that the patch does not need to be held in memory, e.g. to write it out or count its operations.
+	 * With a fork/join pool, the operations of the children of large containers are collected by
+	 * their tasks and passed to the sink in document order.
+	 * 
+	 * @param sourceJson - source json.
+	 * @param otherJson - other json.
+	 * @param sink - receives the patch operations, in patch order, see {@link DiffSink#of(java.util.function.Consumer)}
+	 * and {@link PatchCollector}.
+	 * @throws IOException if the sink fails, which stops the diff.
+	 */
+	public void getDiff(JsonNode sourceJson, JsonNode otherJson, DiffSink sink) throws IOException {
+		getDiff(JsonFingerprint.of(sourceJson, pathFilter), JsonFingerprint.of(otherJson, pathFilter), sink);
+	}
+
+	/**
+	 * Diffs the documents of the given fingerprints, and passes each operation to the sink.
+	 * 
+	 * @see #getDiff(JsonNode, JsonNode, DiffSink)
+	 * @see #getDiff(JsonFingerprint, JsonFingerprint)
+	 */
+	public void getDiff(JsonFingerprint source, JsonFingerprint other, DiffSink sink) throws IOException {
+		PathFilter.Cursor cursor = getRootCursor();
+		if (cursor == null)
 			return;
+		//fingerprints computed for another filter would tell apart values which are equal for this one
+		if (source.getFilter() != pathFilter)
+			source = JsonFingerprint.of(source.getDocument(), pathFilter);
+		if (other.getFilter() != pathFilter)
+			other = JsonFingerprint.of(other.getDocument(), pathFilter);
+		Comparison comparison = new Comparison(source, other);
+		try {
+			comparison.compare(source.getDocument(), other.getDocument(), "", cursor, sink);
+		} finally {
+			comparison.reportVisited();
 		}
-		if (target == null && source != null) {
-			//generate a diff which will be to replace entire source entry with target
-			getLogger().fine("Target is null\n source: "+source+"\n target: "+target+"\n");
-			ObjectNode removeOp = JsonNodeFactory.instance.objectNode();
-			removeOp.put("op", "remove");
-			removeOp.put("path", sourcePtr);
-			
-			diff.add(removeOp);
-			return;
+	}
+
+	/**
+	 * Diffs two json documents, and stops once the given number of operations is found, e.g. to show a
+	 * sample of the differences. The fingerprints of both documents are still computed upfront.
+	 * 
+	 * @param sourceJson - source json.
+	 * @param otherJson - other json.
+	 * @param maxOps - maximum number of operations of the diff.
+	 * @return the first operations of the diff, which is marked as truncated if it has more operations.
+	 * @throws IllegalArgumentException if the maximum number of operations is negative.
+	 */
+	public DiffResult getDiff(JsonNode sourceJson, JsonNode otherJson, int maxOps) {
+		return getDiff(JsonFingerprint.of(sourceJson, pathFilter), JsonFingerprint.of(otherJson, pathFilter), maxOps);
+	}
+
+	/**
+	 * Diffs the documents of the given fingerprints, and stops once the given number of operations is found.
+	 * 
+	 * @see #getDiff(JsonNode, JsonNode, int)
+	 */
+	public DiffResult getDiff(JsonFingerprint source, JsonFingerprint other, int maxOps) {
+		if (maxOps < 0)
+			throw new IllegalArgumentException("Maximum number of operations must not be negative: "+maxOps);
+		ArrayNode diff = JsonNodeFactory.instance.arrayNode();
+		try {
+			getDiff(source, other, operation -> {
+				if (diff.size() == maxOps)
+					throw DiffStoppedException.INSTANCE;
+				diff.add(operation);
+			});
+		} catch (DiffStoppedException e) {
+			getLogger().fine(() -> "Diff stopped after "+maxOps+" operations");
+			return new DiffResult(diff, true);
+		} catch (IOException e) {
+			//adding to an array node does not fail
+			throw new UncheckedIOException(e);
 		}
-		
-		if (source.equals(target)) {
-			getLogger().fine("Source and target are EQUAL: "+source);
-			return;
-		} else if (source.isArray() && target.isArray()) {
-			ArrayNode sourceArray = (ArrayNode)source;
-			ArrayNode targetArray = (ArrayNode)target;
-
-			int idx = 0;
-			while (sourceArray.has(idx)  || targetArray.has(idx)) {
-				compare(sourceArray.get(idx), targetArray.get(idx), sourcePtr+"/"+idx);
-				idx++;
-			}
-		} else if (source.isObject() && target.isObject()) {
-			ObjectNode sourceObj = (ObjectNode)source;
-			ObjectNode targetObj = (ObjectNode)target;
-			
-			Iterator<String> fields = sourceObj.getFieldNames();
+		return new DiffResult(diff, false);
+	}
+
+	/**
+	 * Checks if two json documents are equal, or only differ in paths which the
+	 * {@link #setPathFilter(PathFilter) path filter} filters out. The documents are compared
+	 * until their first difference, without computing their fingerprints.
+	 * 
+	 * @param sourceJson - source json, may be null.
+	 * @param otherJson - other json, may be null.
+	 * @return true if the diff of the documents is empty.
+	 */
+	public boolean isEqual(JsonNode sourceJson, JsonNode otherJson) {
+		PathFilter.Cursor cursor = getRootCursor();
+		if (cursor == null || sourceJson == otherJson)
+			return true;
+		if (sourceJson == null || otherJson == null)
+			return false;
+		return PathFilter.isEqual(sourceJson, otherJson, cursor);
+	}
+
+	/**
+	 * Checks if the documents of the given fingerprints are equal. Documents whose fingerprints,
+	 * computed for the path filter of this diff, differ are known to differ without comparing them.
+	 * 
+	 * @see #isEqual(JsonNode, JsonNode)
+	 */
+	public boolean isEqual(JsonFingerprint source, JsonFingerprint other) {
+		JsonNode sourceJson = source.getDocument();
+		JsonNode otherJson = other.getDocument();
+		boolean fingerprinted = sourceJson != null && otherJson != null
+				&& source.getFilter() == pathFilter && other.getFilter() == pathFilter;
+		if (fingerprinted && getRootCursor() != null && source.get(sourceJson) != other.get(otherJson))
+			return false;
+		return isEqual(sourceJson, otherJson);
+	}
+
+	/**
+	 * Finds the first path, in document order, at which two json documents differ, and stops there.
+	 * Arrays are compared index by index, so an element inserted in an array is reported at its
+	 * index even if the diff would add it further. Paths which the {@link #setPathFilter(PathFilter)
+	 * path filter} filters out are skipped.
+	 * 
+	 * @param sourceJson - source json, may be null.
+	 * @param otherJson - other json, may be null.
+	 * @return json pointer of the first value which is different, missing from one of the documents,
+	 * or of a different type; null if the documents are equal.
+	 */
+	public String firstDifference(JsonNode sourceJson, JsonNode otherJson) {
+		PathFilter.Cursor cursor = getRootCursor();
+		if (cursor == null)
+			return null;
+		return firstDifference(sourceJson, otherJson, cursor);
+	}
+
+	/*
+	 * Returns the pointer of the first difference relative to the given values, which is only built
+	 * once a difference is found, as the recursion returns.
+	 */
+	private static String firstDifference(JsonNode source, JsonNode target, PathFilter.Cursor cursor) {
+		if (source == target)
+			return null;
+		if (source == null || target == null)
+			return "";
+		if (source.isObject() && target.isObject()) {
+			Iterator<Map.Entry<String, JsonNode>> fields = source.getFields();
 			while (fields.hasNext()) {
-				String fieldName = fields.next();
-				JsonNode sourceElem = sourceObj.get(fieldName);
-				JsonNode targetElem = targetObj.get(fieldName);
-				getLogger().fine("Checking field "+fieldName+". Recurse with s: "+sourceElem+" & t:"+targetElem);
-				compare(sourceElem, targetElem, sourcePtr+"/"+fieldName);
-			}
-		} else {
-			//generate a diff which will be to replace entire source entry with target
-			getLogger().fine("Source and target are different types:\n source: "+source+"\n target: "+target+"\n");
-			ObjectNode replaceOp = JsonNodeFactory.instance.objectNode();
-			replaceOp.put("op", "replace");
-			replaceOp.put("path", sourcePtr);
-			replaceOp.put("value", target);
-			
-			diff.add(replaceOp);
-			return;
+				Map.Entry<String, JsonNode> field = fields.next();
+				PathFilter.Cursor fieldCursor = cursor.member(field.getKey());
+				String difference = fieldCursor == null ? null :
+						firstDifference(field.getValue(), target.get(field.getKey()), fieldCursor);
+				if (difference != null)
+					return "/"+JsonPointer.encodeReferenceToken(field.getKey())+difference;
+			}
+			//fields which are only in the target
+			Iterator<String> fieldNames = target.getFieldNames();
+			while (fieldNames.hasNext()) {
+				String fieldName = fieldNames.next();
+				if (source.get(fieldName) == null && cursor.member(fieldName) != null)
+					return "/"+JsonPointer.encodeReferenceToken(fieldName);
+			}
+			return null;
+		}
+		if (source.isArray() && target.isArray()) {
+			PathFilter.Cursor elementCursor = cursor.element();
+			for (int i = 0; elementCursor != null && i < Math.max(source.size(), target.size()); i++) {
+				String difference = firstDifference(source.get(i), target.get(i), elementCursor);
+				if (difference != null)
+					return "/"+i+difference;
+			}
+			return null;
+		}
+		return source.equals(target) ? null : "";
+	}
+
+	/**
+	 * Diffs two json documents of any tree model, e.g. jackson 2.x trees with
+	 * {@link com.nitin.json.node.Jackson2NodeAdapter#INSTANCE}. The diff compares jackson 1.x trees,
+	 * so the documents are converted through the adapter by walking their trees, without going
+	 * through their text.
+	 * 
+	 * @param sourceJson - source json.
+	 * @param otherJson - other json.
+	 * @param adapter - adapter of the tree model of the documents.
+	 * @return patch which turns the source into the other json.
+	 */
+	public <N> JsonNode getDiff(N sourceJson, N otherJson, JsonNodeAdapter<N> adapter) {
+		return getDiff(adapter.toJackson(sourceJson), adapter.toJackson(otherJson));
+	}
+
+	/**
+	 * Diffs two json documents of any tree model, and passes each operation to the sink.
+	 * 
+	 * @see #getDiff(Object, Object, JsonNodeAdapter)
+	 * @see #getDiff(JsonNode, JsonNode, DiffSink)
+	 */
+	public <N> void getDiff(N sourceJson, N otherJson, JsonNodeAdapter<N> adapter, DiffSink sink) throws IOException {
+		getDiff(adapter.toJackson(sourceJson), adapter.toJackson(otherJson), sink);
+	}
+
+	/**
+	 * Diffs two json documents, and writes the patch as a json array to the given generator.
+	 * 
+	 * @see #getDiff(JsonNode, JsonNode, DiffSink)
+	 */
+	public void getDiff(JsonNode sourceJson, JsonNode otherJson, JsonGenerator generator) throws IOException {
+		generator.writeStartArray();
+		getDiff(sourceJson, otherJson, DiffSink.to(generator));
+		generator.writeEndArray();
+		generator.flush();
+	}
+
+	/**
+	 * Diffs two json documents while reading them, and passes each operation to the sink as soon as it
+	 * is found. Both parsers are walked in step: equal subtrees are compared token by token, only
+	 * values which differ are read as trees. As long as the fields of the objects appear in the same
+	 * order in both documents, memory depends on the nesting depth and not on the size of the documents.
+	 * Once the fields of an object are out of order, the remaining fields of that object are read as
+	 * trees and diffed like {@link #getDiff(JsonNode, JsonNode)} does.
+	 * 
+	 * Arrays are compared index by index, since their longest common subsequence needs both arrays
+	 * in memory.
+	 * 
+	 * @param sourceParser - parser of the source json, positioned before the document.
+	 * @param otherParser - parser of the other json, positioned before the document.
+	 * @param sink - receives the patch operations, in patch order.
+	 * @throws IOException if either json cannot be read, or the sink fails.
+	 */
+	public void getDiffStreaming(JsonParser sourceParser, JsonParser otherParser, DiffSink sink) throws IOException {
+		new StreamingDiff(this, sourceParser, otherParser, sink).diff();
+	}
+
+	/**
+	 * Streaming diff, like {@link #getDiffStreaming(JsonParser, JsonParser, DiffSink)}, which writes
+	 * the patch as a json array to the given generator.
+	 */
+	public void getDiffStreaming(JsonParser sourceParser, JsonParser otherParser, final JsonGenerator generator)
+			throws IOException {
+		generator.writeStartArray();
+		getDiffStreaming(sourceParser, otherParser, DiffSink.to(generator));
+		generator.writeEndArray();
+		generator.flush();
+	}
+
+	/**
+	 * Streaming diff of the json documents read from the given streams, which writes the patch to the
+	 * given output stream in UTF-8. The streams are not closed.
+	 * 
+	 * @see #getDiffStreaming(JsonParser, JsonParser, DiffSink)
+	 */
+	public void getDiffStreaming(InputStream sourceJson, InputStream otherJson, OutputStream target) throws IOException {
+		getDiffStreaming(mapper.getJsonFactory().createJsonParser(sourceJson),
+				mapper.getJsonFactory().createJsonParser(otherJson),
+				mapper.getJsonFactory().createJsonGenerator(target, JsonEncoding.UTF8));
+	}
+
+	/**
+	 * Streaming diff of the json documents in the given files, which are memory-mapped, and writes
+	 * the patch to the given output stream in UTF-8.
+	 * 
+	 * @see #getDiffStreaming(JsonParser, JsonParser, DiffSink)
+	 */
+	public void getDiffStreaming(Path sourceJson, Path otherJson, OutputStream target) throws IOException {
+		getDiffStreaming(JsonNodeUtils.createParser(mapper.getJsonFactory(), ByteBufferInputStream.map(sourceJson)),
+				JsonNodeUtils.createParser(mapper.getJsonFactory(), ByteBufferInputStream.map(otherJson)),
+				mapper.getJsonFactory().createJsonGenerator(target, JsonEncoding.UTF8));
+	}
+
+	/*
+	 * Diffs two subtrees, with pointers relative to the given pointer and at the given position of the
+	 * path filter, for the streaming diff.
+	 */
+	void diffSubtree(JsonNode source, JsonNode target, String sourcePtr, PathFilter.Cursor cursor, DiffSink out) throws IOException {
+		Comparison comparison = new Comparison(JsonFingerprint.of(source, pathFilter, cursor),
+				JsonFingerprint.of(target, pathFilter, cursor));
+		comparison.compare(source, target, sourcePtr, cursor, out);
+		comparison.reportVisited();
+	}
+
+	/*
+	 * Returns the position of the root of the documents in the path filter, or null if the whole
+	 * documents are filtered out.
+	 */
+	PathFilter.Cursor getRootCursor() {
+		return pathFilter == null ? PathFilter.Cursor.ALL : pathFilter.rootCursor();
+	}
+
+	/*
+	 * Comparison of two documents, using their fingerprints. The compared nodes are only counted
+	 * when a metrics listener is registered.
+	 */
+	private class Comparison {
+		private final JsonFingerprint sourceFingerprint;
+		private final JsonFingerprint targetFingerprint;
+		private final PatchMetrics metrics = MetricsUtils.getMetrics();
+		private final LongAdder visited = metrics == null ? null : new LongAdder();
+
+		Comparison(JsonFingerprint sourceFingerprint, JsonFingerprint targetFingerprint) {
+			this.sourceFingerprint = sourceFingerprint;
+			this.targetFingerprint = targetFingerprint;
+		}
+
+		private void reportVisited() {
+			if (metrics != null)
+				metrics.diffNodesVisited(visited.sum());
+		}
+
+		/*
+		 * Compares two values at the given position of the path filter, which accepts this path.
+		 */
+		private void compare(JsonNode source, JsonNode target, String sourcePtr, PathFilter.Cursor cursor,
+				DiffSink out) throws IOException {
+			if (visited != null)
+				visited.increment();
+			if (source == null && target == null)
+				return;
+			if (source == null && target != null) {
+				//generate a diff which will be to replace entire source entry with target
+				getLogger().fine(() -> "Source is null\n source: "+source+"\n target: "+target+"\n");
+				ObjectNode addOp = JsonNodeFactory.instance.objectNode();
+				addOp.put("op", "add");
+				addOp.put("path", sourcePtr);
+				addOp.put("value", target);
+
+				out.add(addOp);
+				return;
+			}
+			if (target == null && source != null) {
+				//generate a diff which will be to replace entire source entry with target
+				getLogger().fine(() -> "Target is null\n source: "+source+"\n target: "+target+"\n");
+				ObjectNode removeOp = JsonNodeFactory.instance.objectNode();
+				removeOp.put("op", "remove");
+				removeOp.put("path", sourcePtr);
+
+				out.add(removeOp);
+				return;
+			}
+
+			if (isEqual(source, target, cursor)) {
+				getLogger().fine(() -> "Source and target are EQUAL: "+source);
+				return;
+			} else if (source.isArray() && target.isArray()) {
+				compareArrays((ArrayNode)source, (ArrayNode)target, sourcePtr, cursor.element(), out);
+			} else if (source.isObject() && target.isObject()) {
+				final ObjectNode sourceObj = (ObjectNode)source;
+				final ObjectNode targetObj = (ObjectNode)target;
+
+				//fields of the source, followed by the fields which are only in the target
+				final List<String> fieldNames = new ArrayList<String>(sourceObj.size());
+				Iterator<String> fields = sourceObj.getFieldNames();
+				while (fields.hasNext()) {
+					fieldNames.add(fields.next());
+				}
+				fields = targetObj.getFieldNames();
+				while (fields.hasNext()) {
+					String fieldName = fields.next();
+					if (sourceObj.get(fieldName) == null)
+						fieldNames.add(fieldName);
+				}
+				compareChildren(fieldNames.size(), (idx, childOut) -> {
+					String fieldName = fieldNames.get(idx);
+					PathFilter.Cursor fieldCursor = cursor.member(fieldName);
+					if (fieldCursor == null)
+						return;
+					JsonNode sourceElem = sourceObj.get(fieldName);
+					JsonNode targetElem = targetObj.get(fieldName);
+					getLogger().fine(() -> "Checking field "+fieldName+". Recurse with s: "+sourceElem+" & t:"+targetElem);
+					compare(sourceElem, targetElem, sourcePtr+"/"+JsonPointer.encodeReferenceToken(fieldName), fieldCursor, childOut);
+				}, out);
+			} else {
+				//generate a diff which will be to replace entire source entry with target
+				getLogger().fine(() -> "Source and target are different types:\n source: "+source+"\n target: "+target+"\n");
+				ObjectNode replaceOp = JsonNodeFactory.instance.objectNode();
+				replaceOp.put("op", "replace");
+				replaceOp.put("path", sourcePtr);
+				replaceOp.put("value", target);
+
+				out.add(replaceOp);
+				return;
+			}
+		}
+
+		/*
+		 * Compares two arrays, whose elements are at the given position of the path filter, or are
+		 * filtered out if it is null.
+		 */
+		private void compareArrays(final ArrayNode sourceArray, final ArrayNode targetArray, final String sourcePtr,
+				final PathFilter.Cursor elementCursor, DiffSink out) throws IOException {
+			if (elementCursor == null)
+				return;
+			List<ArrayDiff.Edit> edits = null;
+			final String keyMember = getArrayKey(sourcePtr);
+			if (keyMember != null) {
+				int[][] ids = getKeyIds(sourceArray, targetArray, keyMember);
+				edits = ArrayDiff.diffMatched(ids[0], ids[1]);
+			} else if (arrayDiffCutoff > 0) {
+				//equal elements get the same id, so that the LCS compares ids instead of subtrees
+				Map<ElementKey, Integer> elementIds = new HashMap<ElementKey, Integer>();
+				edits = ArrayDiff.diff(getElementIds(sourceArray, sourceFingerprint, elementCursor, elementIds),
+						getElementIds(targetArray, targetFingerprint, elementCursor, elementIds), arrayDiffCutoff);
+			}
+			if (edits == null) {
+				//extra source elements are removed one after the other at the end of the target elements
+				final int targetSize = targetArray.size();
+				compareChildren(Math.max(sourceArray.size(), targetSize), (idx, childOut) ->
+						compare(sourceArray.get(idx), targetArray.get(idx), sourcePtr+"/"+Math.min(idx, targetSize), elementCursor, childOut), out);
+				return;
+			}
+			final List<ArrayDiff.Edit> arrayEdits = edits;
+			compareChildren(arrayEdits.size(), (idx, childOut) ->
+					applyEdit(arrayEdits.get(idx), sourceArray, targetArray, sourcePtr, elementCursor, keyMember != null, childOut), out);
+		}
+
+		/*
+		 * Adds the operations of an array edit. Elements matched by key may also be modified when
+		 * they are moved, elements matched by value are equal.
+		 */
+		private void applyEdit(ArrayDiff.Edit edit, ArrayNode sourceArray, ArrayNode targetArray,
+				String sourcePtr, PathFilter.Cursor elementCursor, boolean matchedByKey, DiffSink out) throws IOException {
+			String elementPtr = sourcePtr+"/"+edit.index;
+			switch (edit.type) {
+				case ArrayDiff.MODIFY:
+					compare(sourceArray.get(edit.sourceIdx), targetArray.get(edit.targetIdx), elementPtr, elementCursor, out);
+					break;
+				case ArrayDiff.REMOVE:
+					compare(sourceArray.get(edit.sourceIdx), null, elementPtr, elementCursor, out);
+					break;
+				case ArrayDiff.ADD:
+					compare(null, targetArray.get(edit.targetIdx), elementPtr, elementCursor, out);
+					break;
+				case ArrayDiff.MOVE:
+					getLogger().fine(() -> "Element "+edit.sourceIdx+" moved to "+edit.targetIdx+" in "+sourcePtr);
+					ObjectNode moveOp = JsonNodeFactory.instance.objectNode();
+					moveOp.put("op", "move");
+					moveOp.put("from", sourcePtr+"/"+edit.from);
+					moveOp.put("path", elementPtr);
+					out.add(moveOp);
+					if (matchedByKey)
+						compare(sourceArray.get(edit.sourceIdx), targetArray.get(edit.targetIdx), elementPtr, elementCursor, out);
+					break;
+			}
+		}
+
+		/*
+		 * Compares the children of a container, in parallel if the container is large enough,
+		 * and adds their operations to out in the order of the children.
+		 */
+		private void compareChildren(int count, ChildComparison children, DiffSink out) throws IOException {
+			if (forkJoinPool == null || count < parallelThreshold) {
+				for (int idx = 0; idx < count; idx++) {
+					children.compare(idx, out);
+				}
+				return;
+			}
+			ChildrenTask task = new ChildrenTask(children, 0, count);
+			for (ObjectNode operation : ForkJoinTask.getPool() == forkJoinPool ? task.invoke() : forkJoinPool.invoke(task)) {
+				out.add(operation);
+			}
+		}
+
+		private boolean isEqual(JsonNode source, JsonNode target, PathFilter.Cursor cursor) {
+			if (source.isContainerNode() && target.isContainerNode()
+					&& sourceFingerprint.get(source) != targetFingerprint.get(target))
+				return false;
+			return PathFilter.isEqual(source, target, cursor);
+		}
+
+		/*
+		 * Returns the ids of the source and target elements, where the elements with the same key have
+		 * the same id and every other element has an id of its own.
+		 */
+		private int[][] getKeyIds(ArrayNode sourceArray, ArrayNode targetArray, String keyMember) {
+			Map<JsonNode, Integer> keyIds = new HashMap<JsonNode, Integer>(sourceArray.size() * 4 / 3 + 1);
+			int nextId = 0;
+			int[] sourceIds = new int[sourceArray.size()];
+			for (int i = 0; i < sourceIds.length; i++) {
+				JsonNode key = sourceArray.get(i).get(keyMember);
+				sourceIds[i] = nextId++;
+				if (key != null && !keyIds.containsKey(key))
+					keyIds.put(key, sourceIds[i]);
+			}
+			int[] targetIds = new int[targetArray.size()];
+			for (int j = 0; j < targetIds.length; j++) {
+				JsonNode key = targetArray.get(j).get(keyMember);
+				//a key is matched once, a repeated key gets an id of its own
+				Integer id = key == null ? null : keyIds.remove(key);
+				targetIds[j] = id != null ? id : nextId++;
+			}
+			return new int[][] {sourceIds, targetIds};
+		}
+
+		private int[] getElementIds(ArrayNode array, JsonFingerprint fingerprint, PathFilter.Cursor elementCursor,
+				Map<ElementKey, Integer> elementIds) {
+			int[] ids = new int[array.size()];
+			for (int i = 0; i < ids.length; i++) {
+				ElementKey key = new ElementKey(array.get(i), fingerprint.get(array.get(i)), elementCursor);
+				Integer id = elementIds.get(key);
+				if (id == null) {
+					id = elementIds.size();
+					elementIds.put(key, id);
+				}
+				ids[i] = id;
+			}
+			return ids;
+		}
+	}
+
+	private interface ChildComparison {
+		void compare(int idx, DiffSink out) throws IOException;
+	}
+
+	/*
+	 * Compares a range of children, splitting it in halves until it is below the parallel threshold.
+	 */
+	private class ChildrenTask extends RecursiveTask<List<ObjectNode>> {
+		private static final long serialVersionUID = 1L;
+		private final ChildComparison children;
+		private final int from, to;
+
+		ChildrenTask(ChildComparison children, int from, int to) {
+			this.children = children;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<ObjectNode> compute() {
+			if (to - from <= parallelThreshold) {
+				List<ObjectNode> out = new ArrayList<ObjectNode>();
+				try {
+					for (int idx = from; idx < to; idx++) {
+						children.compare(idx, out::add);
+					}
+				} catch (IOException e) {
+					//adding to a list does not fail
+					throw new UncheckedIOException(e);
+				}
+				return out;
+			}
+			int middle = (from + to) >>> 1;
+			ChildrenTask first = new ChildrenTask(children, from, middle);
+			first.fork();
+			List<ObjectNode> second = new ChildrenTask(children, middle, to).compute();
+			List<ObjectNode> out = first.join();
+			out.addAll(second);
+			return out;
+		}
+	}
+
+	/*
+	 * Thrown by the sink of a bounded diff to stop the comparison. It is thrown often, so it is a
+	 * single instance without a stack trace.
+	 */
+	private static class DiffStoppedException extends IOException {
+		private static final long serialVersionUID = 1L;
+		static final DiffStoppedException INSTANCE = new DiffStoppedException();
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+	}
+
+	/*
+	 * Key member of the arrays matching a pointer pattern.
+	 */
+	private static class ArrayKey {
+		private final JsonPointer arrayPattern;
+		private final String keyMember;
+
+		ArrayKey(JsonPointer arrayPattern, String keyMember) {
+			this.arrayPattern = arrayPattern;
+			this.keyMember = keyMember;
+		}
+
+		boolean matches(JsonPointer arrayPtr) {
+			if (arrayPtr.getTokenCount() != arrayPattern.getTokenCount())
+				return false;
+			for (int i = 0; i < arrayPtr.getTokenCount(); i++) {
+				String token = arrayPattern.getReferenceToken(i);
+				if (!WILDCARD.equals(token) && !token.equals(arrayPtr.getReferenceToken(i)))
+					return false;
+			}
+			return true;
+		}
+	}
+
+	/*
+	 * Array element as a hash key, hashed by its fingerprint, and equal to the elements which only
+	 * differ in filtered out paths.
+	 */
+	private static class ElementKey {
+		private final JsonNode node;
+		private final long fingerprint;
+
+		private final PathFilter.Cursor cursor;
+
+		ElementKey(JsonNode node, long fingerprint, PathFilter.Cursor cursor) {
+			this.node = node;
+			this.fingerprint = fingerprint;
+			this.cursor = cursor;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int)(fingerprint ^ (fingerprint >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof ElementKey && ((ElementKey)other).fingerprint == fingerprint
+					&& PathFilter.isEqual(((ElementKey)other).node, node, cursor);
 		}
 	}
 
@@ -0,0 +1,142 @@
+package com.nitin.json.diff;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.codehaus.jackson.JsonNode;
+
+/**
+ * Content fingerprints of every container node of a json document, computed in a single pass.
+ *
+ * Equal nodes always have the same fingerprint, so {@link JsonDiff} skips a pair of subtrees with
+ * different fingerprints without comparing them, and only confirms equality with
+ * {@link JsonNode#equals(Object)} when the fingerprints match. Like {@link JsonNode#equals(Object)},
+ * the fingerprint of an object does not depend on the order of its fields.
+ *
+ * A fingerprint can be reused to diff one baseline document against many others, e.g.
+ * <pre>
+ * JsonFingerprint baseline = JsonFingerprint.of(baselineNode);
+ * for (JsonNode candidate : candidates)
+ *     new JsonDiff().getDiff(baseline, candidate);
+ * </pre>
+ * The document must not be modified once its fingerprint is computed. Fingerprints are read-only
+ * once computed, and can be shared across threads.
+ *
+ * @author Nitin Patel
+ */
+public class JsonFingerprint {
+
+	private static final long ARRAY_SEED = 0x9E3779B97F4A7C15L;
+	private static final long OBJECT_SEED = 0xC2B2AE3D27D4EB4FL;
+	private final JsonNode document;
+	private final PathFilter filter;
+	private final Map<JsonNode, Long> fingerprints;
+
+	private JsonFingerprint(JsonNode document, PathFilter filter, PathFilter.Cursor cursor) {
+		this.document = document;
+		this.filter = filter;
+		this.fingerprints = new IdentityHashMap<JsonNode, Long>();
+		if (document != null && cursor != null)
+			compute(document, cursor);
+	}
+
+	/**
+	 * Computes the fingerprints of the given document.
+	 *
+	 * @param document - json document, which must not be modified afterwards.
+	 * @return fingerprints of the document
+	 */
+	public static JsonFingerprint of(JsonNode document) {
+		return new JsonFingerprint(document, null, PathFilter.Cursor.ALL);
+	}
+
+	/**
+	 * Computes the fingerprints of the given document, for a diff with the given path filter. The
+	 * parts of the document which are filtered out are skipped, so nodes which only differ there
+	 * have the same fingerprint.
+	 *
+	 * @param document - json document, which must not be modified afterwards.
+	 * @param filter - path filter of the diff, or null to fingerprint the whole document.
+	 * @return fingerprints of the document
+	 * @see JsonDiff#setPathFilter(PathFilter)
+	 */
+	public static JsonFingerprint of(JsonNode document, PathFilter filter) {
+		return new JsonFingerprint(document, filter, filter == null ? PathFilter.Cursor.ALL : filter.rootCursor());
+	}
+
+	/*
+	 * Computes the fingerprints of a subtree of a filtered document, from the position of its root.
+	 */
+	static JsonFingerprint of(JsonNode subtree, PathFilter filter, PathFilter.Cursor cursor) {
+		return new JsonFingerprint(subtree, filter, cursor);
+	}
+
+	public JsonNode getDocument() {
+		return document;
+	}
+
+	/**
+	 * @return path filter the fingerprints were computed for, null for the whole document.
+	 */
+	public PathFilter getFilter() {
+		return filter;
+	}
+
+	/**
+	 * @param node - node of this document, or any value node.
+	 * @return fingerprint of the given node.
+	 */
+	public long get(JsonNode node) {
+		if (!node.isContainerNode())
+			return valueFingerprint(node);
+		Long fingerprint = fingerprints.get(node);
+		//a node which is not part of the document is hashed separately, so that this stays read-only
+		return fingerprint != null ? fingerprint : of(node).get(node);
+	}
+
+	private long compute(JsonNode node, PathFilter.Cursor cursor) {
+		long fingerprint;
+		if (node.isArray()) {
+			fingerprint = ARRAY_SEED;
+			PathFilter.Cursor elementCursor = cursor.element();
+			//arrays whose elements are filtered out are all equal
+			int size = elementCursor == null ? 0 : node.size();
+			for (int i = 0; i < size; i++) {
+				fingerprint = fingerprint * 31 + compute(node.get(i), elementCursor);
+			}
+			fingerprint = mix(fingerprint + size);
+		} else if (node.isObject()) {
+			//sum of the field fingerprints, so that the order of the fields does not matter
+			fingerprint = OBJECT_SEED;
+			int size = 0;
+			Iterator<Map.Entry<String, JsonNode>> fields = node.getFields();
+			while (fields.hasNext()) {
+				Map.Entry<String, JsonNode> field = fields.next();
+				PathFilter.Cursor fieldCursor = cursor.member(field.getKey());
+				if (fieldCursor == null)
+					continue;
+				fingerprint += mix(field.getKey().hashCode() * ARRAY_SEED + compute(field.getValue(), fieldCursor));
+				size++;
+			}
+			fingerprint = mix(fingerprint + size);
+		} else {
+			return valueFingerprint(node);
+		}
+		fingerprints.put(node, fingerprint);
+		return fingerprint;
+	}
+
+	private static long valueFingerprint(JsonNode node) {
+		return mix(node.hashCode());
+	}
+
+	/*
+	 * Finalizer of SplitMix64, which spreads every input bit over the whole fingerprint.
+	 */
+	private static long mix(long value) {
+		value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+		value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+		return value ^ (value >>> 31);
+	}
+}
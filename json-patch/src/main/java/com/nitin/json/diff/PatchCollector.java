@@ -0,0 +1,45 @@
+package com.nitin.json.diff;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.jackson.node.ObjectNode;
+
+import com.nitin.json.patch.JsonPatch;
+import com.nitin.json.patch.vo.PatchOperation;
+
+/**
+ * Sink which collects the operations of a diff into a {@link JsonPatch}.
+ *
+ * Usage:
+ * <pre>
+ * PatchCollector collector = new PatchCollector();
+ * new JsonDiff().getDiff(source, target, collector);
+ * JsonPatch patch = collector.getPatch();
+ * </pre>
+ *
+ * @author Nitin Patel
+ */
+public class PatchCollector implements DiffSink {
+
+	private final List<PatchOperation> patchOperations = new ArrayList<PatchOperation>();
+
+	@Override
+	public void add(ObjectNode operation) {
+		patchOperations.add(DiffSink.toPatchOperation(operation));
+	}
+
+	/**
+	 * @return number of operations collected so far.
+	 */
+	public int size() {
+		return patchOperations.size();
+	}
+
+	/**
+	 * @return patch of the operations collected so far.
+	 */
+	public JsonPatch getPatch() {
+		return new JsonPatch(patchOperations);
+	}
+}
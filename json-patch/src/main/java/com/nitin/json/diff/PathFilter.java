@@ -0,0 +1,261 @@
+package com.nitin.json.diff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.jackson.JsonNode;
+
+import com.nitin.json.pointer.JsonPointer;
+
+/**
+ * Include and exclude patterns of the paths which {@link JsonDiff} compares, e.g. to leave volatile
+ * subtrees like timestamps or runtime statistics out of a diff.
+ *
+ * Patterns are json pointers where a "*" reference token matches any token, e.g.
+ * "/topology/appservers/*&#47;stats". A path is compared if it is inside an included pattern, or if
+ * there are no included patterns, and it is not inside an excluded pattern. The parents of included
+ * patterns are walked to reach them, but their other children are not compared. Array elements are
+ * only matched by "*", since their indexes shift while a diff is computed.
+ *
+ * The patterns are compiled into a trie of their reference tokens, which the diff walks along with the
+ * documents: subtrees which are filtered out are never visited, compared or fingerprinted. A value
+ * which is added, removed or replaced as a whole is still patched as a whole, filtered out parts
+ * included.
+ *
+ * Usage:
+ * <pre>
+ * JsonDiff jsonDiff = new JsonDiff();
+ * jsonDiff.setPathFilter(PathFilter.excluding("/runtime", "/topology/appservers/*&#47;stats"));
+ * </pre>
+ * Instances are immutable and can be shared across threads.
+ *
+ * @author Nitin Patel
+ */
+public class PathFilter {
+
+	private static final String WILDCARD = "*";
+	private final TrieNode root = new TrieNode();
+	private final boolean hasIncludes;
+
+	/**
+	 * @param includes - patterns of the paths to compare, or an empty collection to compare every path.
+	 * @param excludes - patterns of the paths not to compare, which win over the included patterns.
+	 */
+	public PathFilter(Collection<String> includes, Collection<String> excludes) {
+		for (String include : includes) {
+			add(include).include = true;
+		}
+		for (String exclude : excludes) {
+			add(exclude).exclude = true;
+		}
+		hasIncludes = !includes.isEmpty();
+	}
+
+	/**
+	 * @param patterns - patterns of the paths not to compare.
+	 * @return filter which compares every other path.
+	 */
+	public static PathFilter excluding(String... patterns) {
+		return new PathFilter(Collections.<String>emptyList(), Arrays.asList(patterns));
+	}
+
+	/**
+	 * @param patterns - patterns of the paths to compare.
+	 * @return filter which compares the given paths only.
+	 */
+	public static PathFilter including(String... patterns) {
+		return new PathFilter(Arrays.asList(patterns), Collections.<String>emptyList());
+	}
+
+	private TrieNode add(String pattern) {
+		JsonPointer pointer = JsonPointer.compile(pattern);
+		TrieNode node = root;
+		for (int i = 0; i < pointer.getTokenCount(); i++) {
+			node = node.child(pointer.getReferenceToken(i));
+		}
+		return node;
+	}
+
+	/**
+	 * @param path - json pointer of a value, where tokens which are array indexes refer to array elements.
+	 * @return true if the value is compared by the diff, false if it is filtered out.
+	 */
+	public boolean accepts(String path) {
+		JsonPointer pointer = JsonPointer.compile(path);
+		Cursor cursor = rootCursor();
+		for (int i = 0; cursor != null && i < pointer.getTokenCount(); i++) {
+			String token = pointer.getReferenceToken(i);
+			cursor = pointer.getArrayIndex(i) != JsonPointer.NOT_AN_INDEX ? cursor.element() : cursor.member(token);
+		}
+		return cursor != null && cursor.included;
+	}
+
+	/*
+	 * Returns the position of the root of a document, or null if the whole document is filtered out.
+	 */
+	Cursor rootCursor() {
+		if (root.exclude)
+			return null;
+		if (root.include || !hasIncludes)
+			return root.hasChildren() ? new Cursor(new TrieNode[] {root}, true) : Cursor.ALL;
+		return new Cursor(new TrieNode[] {root}, false);
+	}
+
+	/*
+	 * Checks if two values are equal, ignoring the parts which are filtered out.
+	 */
+	static boolean isEqual(JsonNode source, JsonNode target, Cursor cursor) {
+		if (cursor.isUnfiltered())
+			return source.equals(target);
+		if (source.isObject() && target.isObject()) {
+			int fields = 0;
+			Iterator<Map.Entry<String, JsonNode>> sourceFields = source.getFields();
+			while (sourceFields.hasNext()) {
+				Map.Entry<String, JsonNode> field = sourceFields.next();
+				Cursor fieldCursor = cursor.member(field.getKey());
+				if (fieldCursor == null)
+					continue;
+				fields++;
+				JsonNode targetField = target.get(field.getKey());
+				if (targetField == null || !isEqual(field.getValue(), targetField, fieldCursor))
+					return false;
+			}
+			//every compared field of the source is in the target, so the target has no other compared field
+			//if it has as many
+			Iterator<String> targetFields = target.getFieldNames();
+			while (targetFields.hasNext()) {
+				if (cursor.member(targetFields.next()) != null)
+					fields--;
+			}
+			return fields == 0;
+		}
+		if (source.isArray() && target.isArray()) {
+			Cursor elementCursor = cursor.element();
+			if (elementCursor == null)
+				return true;
+			if (source.size() != target.size())
+				return false;
+			for (int i = 0; i < source.size(); i++) {
+				if (!isEqual(source.get(i), target.get(i), elementCursor))
+					return false;
+			}
+			return true;
+		}
+		return source.equals(target);
+	}
+
+	/*
+	 * Position of a path of a document in the trie: the trie nodes which the path reaches, and whether
+	 * the path is inside an included pattern. Paths which are filtered out have no cursor.
+	 */
+	static final class Cursor {
+		//position below which every path is compared
+		static final Cursor ALL = new Cursor(new TrieNode[0], true);
+		private final TrieNode[] nodes;
+		private final boolean included;
+
+		private Cursor(TrieNode[] nodes, boolean included) {
+			this.nodes = nodes;
+			this.included = included;
+		}
+
+		boolean isUnfiltered() {
+			return nodes.length == 0;
+		}
+
+		/*
+		 * Returns the position of the given member of the value at this position, or null if the
+		 * member is filtered out.
+		 */
+		Cursor member(String name) {
+			if (nodes.length == 0)
+				return this;
+			List<TrieNode> children = new ArrayList<TrieNode>(nodes.length);
+			boolean childIncluded = included;
+			for (TrieNode node : nodes) {
+				TrieNode child = node.members == null ? null : node.members.get(name);
+				if (isExcluded(child) || isExcluded(node.wildcard))
+					return null;
+				childIncluded = visit(child, children, childIncluded);
+				childIncluded = visit(node.wildcard, children, childIncluded);
+			}
+			return next(children, childIncluded);
+		}
+
+		/*
+		 * Returns the position of the elements of the array at this position, or null if they are
+		 * filtered out.
+		 */
+		Cursor element() {
+			if (nodes.length == 0)
+				return this;
+			List<TrieNode> children = new ArrayList<TrieNode>(nodes.length);
+			boolean childIncluded = included;
+			for (TrieNode node : nodes) {
+				if (isExcluded(node.wildcard))
+					return null;
+				childIncluded = visit(node.wildcard, children, childIncluded);
+			}
+			return next(children, childIncluded);
+		}
+
+		private static boolean isExcluded(TrieNode child) {
+			return child != null && child.exclude;
+		}
+
+		/*
+		 * Adds the child to the nodes of the next position if patterns go on below it, and returns
+		 * whether the next position is included.
+		 */
+		private static boolean visit(TrieNode child, List<TrieNode> children, boolean childIncluded) {
+			if (child == null)
+				return childIncluded;
+			if (child.hasChildren())
+				children.add(child);
+			return childIncluded || child.include;
+		}
+
+		private static Cursor next(List<TrieNode> children, boolean childIncluded) {
+			//a path which is neither included nor leads to an included pattern is filtered out
+			if (children.isEmpty())
+				return childIncluded ? ALL : null;
+			return new Cursor(children.toArray(new TrieNode[children.size()]), childIncluded);
+		}
+	}
+
+	/*
+	 * Node of the trie, with its children by reference token, and the wildcard child.
+	 */
+	private static class TrieNode {
+		Map<String, TrieNode> members;
+		TrieNode wildcard;
+		boolean include;
+		boolean exclude;
+
+		TrieNode child(String token) {
+			if (WILDCARD.equals(token)) {
+				if (wildcard == null)
+					wildcard = new TrieNode();
+				return wildcard;
+			}
+			if (members == null)
+				members = new HashMap<String, TrieNode>();
+			TrieNode child = members.get(token);
+			if (child == null) {
+				child = new TrieNode();
+				members.put(token, child);
+			}
+			return child;
+		}
+
+		boolean hasChildren() {
+			return members != null || wildcard != null;
+		}
+	}
+}
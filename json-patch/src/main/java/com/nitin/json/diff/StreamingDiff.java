@@ -0,0 +1,174 @@
+package com.nitin.json.diff;
+
+import java.io.IOException;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.JsonNodeFactory;
+import org.codehaus.jackson.node.NullNode;
+import org.codehaus.jackson.node.ObjectNode;
+
+import com.nitin.json.metrics.PatchMetrics;
+import com.nitin.json.pointer.JsonPointer;
+import com.nitin.json.util.MetricsUtils;
+import static com.nitin.json.util.LoggerUtils.*;
+
+/*
+ * Diffs two documents while streaming them from two JsonParsers.
+ *
+ * Both parsers are advanced in step, one value at a time. Objects whose fields appear in the same
+ * order and arrays are walked token by token, so only the path from the root to the current value
+ * is kept in memory. Values which differ are read as trees: scalars are compared as value nodes,
+ * values of different types are replaced by the target value, and once the fields of an object are
+ * out of order, the rest of both objects is read and handed to the tree diff of JsonDiff. Values
+ * which the path filter of the JsonDiff filters out are skipped without being read.
+ */
+class StreamingDiff {
+
+	private static ObjectMapper mapper = new ObjectMapper();
+	private final JsonDiff jsonDiff;
+	private final JsonParser source;
+	private final JsonParser target;
+	private final DiffSink sink;
+	private final PatchMetrics metrics = MetricsUtils.getMetrics();
+	//containers walked in step, the values read as trees are counted by the tree diff
+	private long visited;
+
+	StreamingDiff(JsonDiff jsonDiff, JsonParser source, JsonParser target, DiffSink sink) {
+		this.jsonDiff = jsonDiff;
+		this.source = source;
+		this.target = target;
+		this.sink = sink;
+	}
+
+	void diff() throws IOException {
+		PathFilter.Cursor cursor = jsonDiff.getRootCursor();
+		if (cursor == null)
+			return;
+		JsonToken sourceToken = source.nextToken();
+		JsonToken targetToken = target.nextToken();
+		if (sourceToken == null || targetToken == null) {
+			//an empty document is diffed as a missing one, like the tree diff does
+			diffTrees(sourceToken == null ? null : readValue(source),
+					targetToken == null ? null : readValue(target), "", cursor);
+			return;
+		}
+		diffValue("", cursor);
+		if (metrics != null)
+			metrics.diffNodesVisited(visited);
+	}
+
+	/*
+	 * Diffs the values at the current tokens of both parsers, at the given position of the path
+	 * filter, and leaves both parsers at the last token of their value.
+	 */
+	private void diffValue(String ptr, PathFilter.Cursor cursor) throws IOException {
+		JsonToken sourceToken = source.getCurrentToken();
+		JsonToken targetToken = target.getCurrentToken();
+		if (sourceToken == JsonToken.START_OBJECT && targetToken == JsonToken.START_OBJECT) {
+			visited++;
+			diffObjects(ptr, cursor);
+		} else if (sourceToken == JsonToken.START_ARRAY && targetToken == JsonToken.START_ARRAY) {
+			visited++;
+			diffArrays(ptr, cursor.element());
+		} else if (sourceToken.isScalarValue() && targetToken.isScalarValue()) {
+			diffTrees(readValue(source), readValue(target), ptr, cursor);
+		} else {
+			getLogger().fine(() -> "Source and target are different types at "+ptr);
+			source.skipChildren();
+			emit("replace", ptr, readValue(target));
+		}
+	}
+
+	private void diffObjects(String ptr, PathFilter.Cursor cursor) throws IOException {
+		JsonToken sourceToken = source.nextToken();
+		JsonToken targetToken = target.nextToken();
+		while (sourceToken == JsonToken.FIELD_NAME && targetToken == JsonToken.FIELD_NAME
+				&& source.getCurrentName().equals(target.getCurrentName())) {
+			String fieldName = source.getCurrentName();
+			source.nextToken();
+			target.nextToken();
+			PathFilter.Cursor fieldCursor = cursor.member(fieldName);
+			if (fieldCursor == null) {
+				source.skipChildren();
+				target.skipChildren();
+			} else {
+				diffValue(ptr+"/"+JsonPointer.encodeReferenceToken(fieldName), fieldCursor);
+			}
+			sourceToken = source.nextToken();
+			targetToken = target.nextToken();
+		}
+		if (sourceToken == JsonToken.END_OBJECT && targetToken == JsonToken.END_OBJECT)
+			return;
+		getLogger().fine(() -> "Fields of "+ptr+" are not in the same order, reading the rest of the object");
+		diffTrees(readRemainingFields(source, cursor), readRemainingFields(target, cursor), ptr, cursor);
+	}
+
+	/*
+	 * Diffs two arrays, whose elements are at the given position of the path filter, or are skipped
+	 * if it is null.
+	 */
+	private void diffArrays(String ptr, PathFilter.Cursor elementCursor) throws IOException {
+		if (elementCursor == null) {
+			source.skipChildren();
+			target.skipChildren();
+			return;
+		}
+		JsonToken sourceToken = source.nextToken();
+		JsonToken targetToken = target.nextToken();
+		int idx = 0;
+		while (sourceToken != JsonToken.END_ARRAY && targetToken != JsonToken.END_ARRAY) {
+			diffValue(ptr+"/"+idx++, elementCursor);
+			sourceToken = source.nextToken();
+			targetToken = target.nextToken();
+		}
+		//extra source elements are removed one after the other at the end of the target elements
+		while (sourceToken != JsonToken.END_ARRAY) {
+			source.skipChildren();
+			emit("remove", ptr+"/"+idx, null);
+			sourceToken = source.nextToken();
+		}
+		while (targetToken != JsonToken.END_ARRAY) {
+			emit("add", ptr+"/"+idx++, readValue(target));
+			targetToken = target.nextToken();
+		}
+	}
+
+	/*
+	 * Reads the fields from the current one up to the end of the object, skipping the ones which
+	 * are filtered out.
+	 */
+	private static ObjectNode readRemainingFields(JsonParser parser, PathFilter.Cursor cursor) throws IOException {
+		ObjectNode fields = JsonNodeFactory.instance.objectNode();
+		while (parser.getCurrentToken() == JsonToken.FIELD_NAME) {
+			String fieldName = parser.getCurrentName();
+			parser.nextToken();
+			if (cursor.member(fieldName) == null)
+				parser.skipChildren();
+			else
+				fields.put(fieldName, readValue(parser));
+			parser.nextToken();
+		}
+		return fields;
+	}
+
+	private static JsonNode readValue(JsonParser parser) throws IOException {
+		JsonNode value = mapper.readTree(parser);
+		return value == null ? NullNode.getInstance() : value;
+	}
+
+	private void diffTrees(JsonNode sourceNode, JsonNode targetNode, String ptr, PathFilter.Cursor cursor) throws IOException {
+		jsonDiff.diffSubtree(sourceNode, targetNode, ptr, cursor, sink);
+	}
+
+	private void emit(String op, String ptr, JsonNode value) throws IOException {
+		ObjectNode operation = JsonNodeFactory.instance.objectNode();
+		operation.put("op", op);
+		operation.put("path", ptr);
+		if (value != null)
+			operation.put("value", value);
+		sink.add(operation);
+	}
+}
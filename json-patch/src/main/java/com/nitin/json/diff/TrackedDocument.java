@@ -0,0 +1,186 @@
+package com.nitin.json.diff;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.jackson.JsonNode;
+
+import com.nitin.json.patch.JsonPatch;
+import com.nitin.json.patch.PatchCompiler;
+import com.nitin.json.patch.exception.JsonPatchException;
+import com.nitin.json.patch.vo.PatchOperation;
+import com.nitin.json.patch.vo.PatchOperationType;
+import com.nitin.json.pointer.JsonPointer;
+import com.nitin.json.pointer.exception.JsonPointerException;
+import static com.nitin.json.util.LoggerUtils.*;
+
+/**
+ * A json document which records its changes as patch operations while they are made, so its diff is
+ * known without comparing it with a copy of its original version.
+ *
+ * The document is changed through the methods of this class only, which apply the change in place
+ * and record it; changes made directly on the node returned by {@link #getNode()} are not tracked.
+ * {@link #diff()} folds the recorded operations with {@link PatchCompiler}, so its cost depends on the
+ * number of changes and not on the size of the document.
+ *
+ * Usage:
+ * <pre>
+ * TrackedDocument document = new TrackedDocument(topology);
+ * document.replace("/topology/LBR/port", portNode);
+ * document.remove("/topology/appservers/1");
+ * JsonPatch diff = document.diff();
+ * </pre>
+ * The values given to the changes are recorded as they are and must not be modified afterwards.
+ * Instances are not thread safe.
+ *
+ * @author Nitin Patel
+ */
+public class TrackedDocument {
+
+	private JsonNode node;
+	private final List<PatchOperation> patchOperations = new ArrayList<PatchOperation>();
+
+	/**
+	 * @param node - json document to track, which is modified by the changes made through this instance.
+	 */
+	public TrackedDocument(JsonNode node) {
+		this.node = node;
+	}
+
+	/**
+	 * @return current version of the document. Changes made directly on it are not tracked.
+	 */
+	public JsonNode getNode() {
+		return node;
+	}
+
+	/**
+	 * Adds a value, see RFC 6902 "add".
+	 *
+	 * @param path - target location.
+	 * @param value - value to add.
+	 * @throws JsonPatchException - if the value can not be added, the document is then not modified.
+	 */
+	public void add(String path, JsonNode value) throws JsonPatchException {
+		record(new PatchOperation(PatchOperationType.add, resolveAppend(path), null, value));
+	}
+
+	/**
+	 * Removes a value, see RFC 6902 "remove".
+	 *
+	 * @param path - location of the value to remove.
+	 * @throws JsonPatchException - if the value can not be removed, the document is then not modified.
+	 */
+	public void remove(String path) throws JsonPatchException {
+		record(new PatchOperation(PatchOperationType.remove, path, null, null));
+	}
+
+	/**
+	 * Replaces a value, see RFC 6902 "replace".
+	 *
+	 * @param path - location of the value to replace.
+	 * @param value - new value.
+	 * @throws JsonPatchException - if the value can not be replaced, the document is then not modified.
+	 */
+	public void replace(String path, JsonNode value) throws JsonPatchException {
+		record(new PatchOperation(PatchOperationType.replace, path, null, value));
+	}
+
+	/**
+	 * Moves a value, see RFC 6902 "move".
+	 *
+	 * @param from - location of the value to move.
+	 * @param path - target location.
+	 * @throws JsonPatchException - if the value can not be moved.
+	 */
+	public void move(String from, String path) throws JsonPatchException {
+		record(new PatchOperation(PatchOperationType.move, path, from, null));
+	}
+
+	/**
+	 * Copies a value, see RFC 6902 "copy".
+	 *
+	 * @param from - location of the value to copy.
+	 * @param path - target location.
+	 * @throws JsonPatchException - if the value can not be copied, the document is then not modified.
+	 */
+	public void copy(String from, String path) throws JsonPatchException {
+		record(new PatchOperation(PatchOperationType.copy, resolveAppend(path), from, null));
+	}
+
+	/**
+	 * Applies every operation of the given patch on the document, and records them. The operations
+	 * applied before a failing one stay applied and recorded.
+	 *
+	 * @param patch - patch to apply.
+	 * @throws JsonPatchException - if any of the patch operations fails.
+	 */
+	public void apply(JsonPatch patch) throws JsonPatchException {
+		for (PatchOperation patchOp : patch.getPatchOperations()) {
+			PatchOperationType opType = patchOp.getOpType();
+			if (opType == PatchOperationType.add || opType == PatchOperationType.copy)
+				patchOp = new PatchOperation(opType, resolveAppend(patchOp.getPath()), patchOp.getFrom(), patchOp.getValue());
+			record(patchOp);
+		}
+	}
+
+	/*
+	 * Replaces the "-" of an array append by the index the element is appended at, so the append can
+	 * be folded with the later operations on that index.
+	 */
+	private String resolveAppend(String path) {
+		JsonPointer ptr = JsonPointer.compile(path);
+		if (ptr.isEmpty() || !JsonPointer.PATH_HYPHEN.equals(ptr.getLastReferenceToken()))
+			return path;
+		try {
+			JsonNode parent = ptr.getParentNode(node);
+			return parent.isArray() ? ptr.parent().getJsonPtr()+JsonPointer.FORWARD_SLASH+parent.size() : path;
+		} catch (JsonPointerException e) {
+			//the operation fails when applied
+			return path;
+		}
+	}
+
+	/*
+	 * Applies the operation, and records it once it succeeded. "test" operations change nothing,
+	 * so they are not recorded.
+	 */
+	private void record(PatchOperation patchOp) throws JsonPatchException {
+		node = patchOp.applyInPlace(node);
+		if (patchOp.getOpType() != PatchOperationType.test)
+			patchOperations.add(patchOp);
+	}
+
+	/**
+	 * @return number of operations recorded since the document was tracked or last marked.
+	 */
+	public int getChangeCount() {
+		return patchOperations.size();
+	}
+
+	/**
+	 * Returns the patch which turns the document, as it was when tracked or last marked, into its
+	 * current version. Changes which cancel or overwrite each other are folded, e.g. a member replaced
+	 * twice is replaced once with its last value.
+	 *
+	 * @return diff of the changes recorded so far.
+	 */
+	public JsonPatch diff() {
+		List<PatchOperation> compiled = PatchCompiler.compile(patchOperations);
+		getLogger().fine(() -> "Diff of "+patchOperations.size()+" tracked changes has "+compiled.size()+" operations");
+		return new JsonPatch(compiled);
+	}
+
+	/**
+	 * Returns the diff of the changes recorded so far, and starts recording a new diff from the
+	 * current version of the document.
+	 *
+	 * @return diff of the changes recorded so far.
+	 * @see #diff()
+	 */
+	public JsonPatch mark() {
+		JsonPatch diff = diff();
+		patchOperations.clear();
+		return diff;
+	}
+}
@@ -0,0 +1,83 @@
+package com.nitin.json.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies with power of two buckets: bucket i counts the latencies from 2^(i-1)
+ * (inclusive) to 2^i (exclusive) nanoseconds, bucket 0 the latencies of 0ns. Recording is lock free.
+ *
+ * @author Nitin Patel
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Number of buckets, enough for any latency in nanoseconds.
+	 */
+	public static final int BUCKETS = 64;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	/**
+	 * @param nanos - latency to record, negative latencies are recorded as 0.
+	 */
+	public void record(long nanos) {
+		counts.incrementAndGet(bucket(nanos));
+	}
+
+	/**
+	 * @return number of latencies recorded.
+	 */
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			count += counts.get(i);
+		}
+		return count;
+	}
+
+	/**
+	 * @param bucket - index of the bucket, from 0 to {@link #BUCKETS} - 1.
+	 * @return number of latencies recorded in the bucket.
+	 */
+	public long getCount(int bucket) {
+		return counts.get(bucket);
+	}
+
+	/**
+	 * @param bucket - index of the bucket, from 0 to {@link #BUCKETS} - 1.
+	 * @return upper bound of the latencies of the bucket, in nanoseconds.
+	 */
+	public static long getUpperBound(int bucket) {
+		return bucket == BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+	}
+
+	/**
+	 * Estimates a percentile of the recorded latencies, as the upper bound of the bucket in which it falls.
+	 *
+	 * @param percentile - between 0 and 100.
+	 * @return latency in nanoseconds below which the given percentage of the latencies fall,
+	 * 0 if nothing was recorded.
+	 */
+	public long getPercentile(double percentile) {
+		long total = getCount();
+		if (total == 0)
+			return 0;
+		long rank = (long)Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			count += counts.get(i);
+			if (count >= Math.max(1, rank))
+				return getUpperBound(i);
+		}
+		return getUpperBound(BUCKETS - 1);
+	}
+
+	private static int bucket(long nanos) {
+		return nanos <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+	}
+
+	@Override
+	public String toString() {
+		return "count: "+getCount()+", p50: "+getPercentile(50)+"ns, p99: "+getPercentile(99)+"ns";
+	}
+}
@@ -0,0 +1,46 @@
+package com.nitin.json.metrics;
+
+import com.nitin.json.patch.vo.PatchOperationType;
+
+/**
+ * Listener of the work done by patches and diffs, registered with
+ * {@link com.nitin.json.util.MetricsUtils#setMetrics(PatchMetrics)}. When no listener is registered,
+ * nothing is measured: the instrumented code only checks for a listener.
+ *
+ * Listeners are called from the threads which apply the patches and compute the diffs,
+ * so they must be thread safe and cheap. {@link PatchStatistics} is a ready to use listener.
+ *
+ * @author Nitin Patel
+ */
+public interface PatchMetrics {
+
+	/**
+	 * Called after a patch operation is applied.
+	 *
+	 * @param type - type of the operation.
+	 * @param nanos - time taken to apply the operation, in nanoseconds.
+	 */
+	void operationApplied(PatchOperationType type, long nanos);
+
+	/**
+	 * Called after a patch operation failed.
+	 *
+	 * @param type - type of the operation.
+	 * @param nanos - time taken until the operation failed, in nanoseconds.
+	 */
+	void operationFailed(PatchOperationType type, long nanos);
+
+	/**
+	 * Called after a json node is copied, e.g. the document a patch is applied on, or the value of an "add".
+	 *
+	 * @param count - number of object and array nodes copied. Value nodes are shared by the copy.
+	 */
+	void nodesCloned(long count);
+
+	/**
+	 * Called after a diff.
+	 *
+	 * @param count - number of pairs of source and target nodes compared by the diff.
+	 */
+	void diffNodesVisited(long count);
+}
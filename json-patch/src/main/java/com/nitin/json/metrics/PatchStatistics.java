@@ -0,0 +1,115 @@
+package com.nitin.json.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.nitin.json.patch.vo.PatchOperationType;
+
+/**
+ * Listener which keeps counters and latency histograms of the patch operations, per operation type.
+ *
+ * Usage:
+ * <pre>
+ * PatchStatistics statistics = new PatchStatistics();
+ * MetricsUtils.setMetrics(statistics);
+ * ...
+ * statistics.getLatencies(PatchOperationType.add).getPercentile(99);
+ * </pre>
+ *
+ * @author Nitin Patel
+ */
+public class PatchStatistics implements PatchMetrics {
+
+	private final Map<PatchOperationType, LatencyHistogram> latencies = new EnumMap<PatchOperationType, LatencyHistogram>(PatchOperationType.class);
+	private final Map<PatchOperationType, LongAdder> failures = new EnumMap<PatchOperationType, LongAdder>(PatchOperationType.class);
+	private final LongAdder nodesCloned = new LongAdder();
+	private final LongAdder diffNodesVisited = new LongAdder();
+
+	public PatchStatistics() {
+		for (PatchOperationType type : PatchOperationType.values()) {
+			latencies.put(type, new LatencyHistogram());
+			failures.put(type, new LongAdder());
+		}
+	}
+
+	@Override
+	public void operationApplied(PatchOperationType type, long nanos) {
+		latencies.get(type).record(nanos);
+	}
+
+	@Override
+	public void operationFailed(PatchOperationType type, long nanos) {
+		failures.get(type).increment();
+	}
+
+	@Override
+	public void nodesCloned(long count) {
+		nodesCloned.add(count);
+	}
+
+	@Override
+	public void diffNodesVisited(long count) {
+		diffNodesVisited.add(count);
+	}
+
+	/**
+	 * @param type - type of operation.
+	 * @return latencies of the operations of the given type which were applied.
+	 */
+	public LatencyHistogram getLatencies(PatchOperationType type) {
+		return latencies.get(type);
+	}
+
+	/**
+	 * @param type - type of operation.
+	 * @return number of operations of the given type which were applied.
+	 */
+	public long getApplied(PatchOperationType type) {
+		return latencies.get(type).getCount();
+	}
+
+	/**
+	 * @return number of operations which were applied, of any type.
+	 */
+	public long getApplied() {
+		long applied = 0;
+		for (LatencyHistogram histogram : latencies.values()) {
+			applied += histogram.getCount();
+		}
+		return applied;
+	}
+
+	/**
+	 * @param type - type of operation.
+	 * @return number of operations of the given type which failed.
+	 */
+	public long getFailures(PatchOperationType type) {
+		return failures.get(type).sum();
+	}
+
+	/**
+	 * @return number of object and array nodes copied.
+	 */
+	public long getNodesCloned() {
+		return nodesCloned.sum();
+	}
+
+	/**
+	 * @return number of pairs of nodes compared by diffs.
+	 */
+	public long getDiffNodesVisited() {
+		return diffNodesVisited.sum();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder statistics = new StringBuilder();
+		for (PatchOperationType type : PatchOperationType.values()) {
+			statistics.append(type).append(" {").append(latencies.get(type))
+					.append(", failures: ").append(getFailures(type)).append("}\n");
+		}
+		return statistics.append("nodes cloned: ").append(getNodesCloned())
+				.append(", diff nodes visited: ").append(getDiffNodesVisited()).toString();
+	}
+}
@@ -0,0 +1,193 @@
+package com.nitin.json.node;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.POJONode;
+
+/**
+ * Adapter of the jackson 2.x tree model, com.fasterxml.jackson.databind.JsonNode.
+ *
+ * jackson-databind 2.x is an optional dependency of the library, which must be on the classpath
+ * to use this adapter. Values are converted between the jackson 1.x and 2.x models by walking
+ * their trees, keeping the numeric types, e.g. a long stays a long and a BigDecimal keeps its scale.
+ *
+ * @author Nitin Patel
+ */
+public class Jackson2NodeAdapter implements JsonNodeAdapter<JsonNode> {
+
+	public static final Jackson2NodeAdapter INSTANCE = new Jackson2NodeAdapter();
+	//the default factory keeps BigDecimals as they are, trailing zeros included, since jackson 2.15
+	private static final JsonNodeFactory factory = JsonNodeFactory.instance;
+	private static final org.codehaus.jackson.node.JsonNodeFactory jackson1Factory =
+			org.codehaus.jackson.node.JsonNodeFactory.instance;
+
+	private Jackson2NodeAdapter() {
+	}
+
+	@Override
+	public boolean isObject(JsonNode node) {
+		return node instanceof ObjectNode;
+	}
+
+	@Override
+	public boolean isArray(JsonNode node) {
+		return node instanceof ArrayNode;
+	}
+
+	@Override
+	public JsonNode getMember(JsonNode object, String name) {
+		return object.get(name);
+	}
+
+	@Override
+	public JsonNode getElement(JsonNode array, int idx) {
+		return array.get(idx);
+	}
+
+	@Override
+	public int size(JsonNode container) {
+		return container.size();
+	}
+
+	@Override
+	public Iterator<String> getMemberNames(JsonNode object) {
+		return object.fieldNames();
+	}
+
+	@Override
+	public void putMember(JsonNode object, String name, JsonNode value) {
+		((ObjectNode)object).replace(name, value);
+	}
+
+	@Override
+	public JsonNode removeMember(JsonNode object, String name) {
+		return ((ObjectNode)object).remove(name);
+	}
+
+	@Override
+	public void insertElement(JsonNode array, int idx, JsonNode value) {
+		((ArrayNode)array).insert(idx, value);
+	}
+
+	@Override
+	public void addElement(JsonNode array, JsonNode value) {
+		((ArrayNode)array).add(value);
+	}
+
+	@Override
+	public void setElement(JsonNode array, int idx, JsonNode value) {
+		((ArrayNode)array).set(idx, value);
+	}
+
+	@Override
+	public JsonNode removeElement(JsonNode array, int idx) {
+		return ((ArrayNode)array).remove(idx);
+	}
+
+	@Override
+	public JsonNode deepCopy(JsonNode node) {
+		return node == null ? null : node.deepCopy();
+	}
+
+	@Override
+	public JsonNode fromJackson(org.codehaus.jackson.JsonNode node) {
+		if (node == null)
+			return null;
+		if (node.isObject()) {
+			ObjectNode object = factory.objectNode();
+			Iterator<Map.Entry<String, org.codehaus.jackson.JsonNode>> fields = node.getFields();
+			while (fields.hasNext()) {
+				Map.Entry<String, org.codehaus.jackson.JsonNode> field = fields.next();
+				object.replace(field.getKey(), fromJackson(field.getValue()));
+			}
+			return object;
+		}
+		if (node.isArray()) {
+			ArrayNode array = factory.arrayNode(node.size());
+			for (int i = 0; i < node.size(); i++) {
+				array.add(fromJackson(node.get(i)));
+			}
+			return array;
+		}
+		if (node.isTextual())
+			return factory.textNode(node.getTextValue());
+		if (node.isInt())
+			return factory.numberNode(node.getIntValue());
+		if (node.isLong())
+			return factory.numberNode(node.getLongValue());
+		if (node.isBigInteger())
+			return factory.numberNode(node.getBigIntegerValue());
+		if (node.isDouble())
+			return factory.numberNode(node.getDoubleValue());
+		if (node.isBigDecimal())
+			return factory.numberNode(node.getDecimalValue());
+		if (node.isBoolean())
+			return factory.booleanNode(node.getBooleanValue());
+		if (node.isNull())
+			return factory.nullNode();
+		if (node.isMissingNode())
+			return MissingNode.getInstance();
+		try {
+			if (node.isBinary())
+				return factory.binaryNode(node.getBinaryValue());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return factory.pojoNode(((org.codehaus.jackson.node.POJONode)node).getPojo());
+	}
+
+	@Override
+	public org.codehaus.jackson.JsonNode toJackson(JsonNode node) {
+		if (node == null)
+			return null;
+		if (node.isObject()) {
+			org.codehaus.jackson.node.ObjectNode object = jackson1Factory.objectNode();
+			Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+			while (fields.hasNext()) {
+				Map.Entry<String, JsonNode> field = fields.next();
+				object.put(field.getKey(), toJackson(field.getValue()));
+			}
+			return object;
+		}
+		if (node.isArray()) {
+			org.codehaus.jackson.node.ArrayNode array = jackson1Factory.arrayNode();
+			for (int i = 0; i < node.size(); i++) {
+				array.add(toJackson(node.get(i)));
+			}
+			return array;
+		}
+		if (node.isTextual())
+			return jackson1Factory.textNode(node.textValue());
+		if (node.isInt() || node.isShort())
+			return jackson1Factory.numberNode(node.intValue());
+		if (node.isLong())
+			return jackson1Factory.numberNode(node.longValue());
+		if (node.isBigInteger())
+			return jackson1Factory.numberNode(node.bigIntegerValue());
+		if (node.isDouble() || node.isFloat())
+			return jackson1Factory.numberNode(node.doubleValue());
+		if (node.isBigDecimal())
+			return jackson1Factory.numberNode(node.decimalValue());
+		if (node.isBoolean())
+			return jackson1Factory.booleanNode(node.booleanValue());
+		if (node.isNull())
+			return jackson1Factory.nullNode();
+		if (node.isMissingNode())
+			return org.codehaus.jackson.node.MissingNode.getInstance();
+		try {
+			if (node.isBinary())
+				return jackson1Factory.binaryNode(node.binaryValue());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return jackson1Factory.POJONode(((POJONode)node).getPojo());
+	}
+}
@@ -0,0 +1,102 @@
+package com.nitin.json.node;
+
+import java.util.Iterator;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.ObjectNode;
+
+import com.nitin.json.util.JsonNodeUtils;
+
+/**
+ * Adapter of the jackson 1.x tree model, which is the default model of the library.
+ *
+ * @author Nitin Patel
+ */
+public class JacksonNodeAdapter implements JsonNodeAdapter<JsonNode> {
+
+	public static final JacksonNodeAdapter INSTANCE = new JacksonNodeAdapter();
+
+	private JacksonNodeAdapter() {
+	}
+
+	@Override
+	public boolean isObject(JsonNode node) {
+		return node instanceof ObjectNode;
+	}
+
+	@Override
+	public boolean isArray(JsonNode node) {
+		return node instanceof ArrayNode;
+	}
+
+	@Override
+	public JsonNode getMember(JsonNode object, String name) {
+		return object.get(name);
+	}
+
+	@Override
+	public JsonNode getElement(JsonNode array, int idx) {
+		return array.get(idx);
+	}
+
+	@Override
+	public int size(JsonNode container) {
+		return container.size();
+	}
+
+	@Override
+	public Iterator<String> getMemberNames(JsonNode object) {
+		return object.getFieldNames();
+	}
+
+	@Override
+	public void putMember(JsonNode object, String name, JsonNode value) {
+		((ObjectNode)object).put(name, value);
+	}
+
+	@Override
+	public JsonNode removeMember(JsonNode object, String name) {
+		return ((ObjectNode)object).remove(name);
+	}
+
+	@Override
+	public void insertElement(JsonNode array, int idx, JsonNode value) {
+		((ArrayNode)array).insert(idx, value);
+	}
+
+	@Override
+	public void addElement(JsonNode array, JsonNode value) {
+		((ArrayNode)array).add(value);
+	}
+
+	@Override
+	public void setElement(JsonNode array, int idx, JsonNode value) {
+		((ArrayNode)array).set(idx, value);
+	}
+
+	@Override
+	public JsonNode removeElement(JsonNode array, int idx) {
+		return ((ArrayNode)array).remove(idx);
+	}
+
+	@Override
+	public JsonNode deepCopy(JsonNode node) {
+		return JsonNodeUtils.deepCopy(node);
+	}
+
+	@Override
+	public boolean matches(JsonNode node, JsonNode value) {
+		return node.equals(value);
+	}
+
+	@Override
+	public JsonNode fromJackson(JsonNode node) {
+		return JsonNodeUtils.deepCopy(node);
+	}
+
+	@Override
+	public JsonNode toJackson(JsonNode node) {
+		return JsonNodeUtils.deepCopy(node);
+	}
+}
@@ -0,0 +1,128 @@
+package com.nitin.json.node;
+
+import java.util.Iterator;
+
+import org.codehaus.jackson.JsonNode;
+
+/**
+ * Adapter of a json tree model, through which pointers are evaluated and patches are applied on
+ * the trees of that model directly, without serializing them to text and parsing them back.
+ *
+ * {@link JacksonNodeAdapter} adapts the jackson 1.x trees, which the other methods of the library
+ * take, and {@link Jackson2NodeAdapter} adapts jackson 2.x trees. Other tree models are supported
+ * by implementing this interface.
+ *
+ * Usage:
+ * <pre>
+ * com.fasterxml.jackson.databind.JsonNode patched = jsonPatch.apply(document, Jackson2NodeAdapter.INSTANCE);
+ * </pre>
+ * Adapters are stateless and can be shared across threads.
+ *
+ * @param <N> - type of the nodes of the tree model.
+ * @author Nitin Patel
+ */
+public interface JsonNodeAdapter<N> {
+
+	/**
+	 * @return true if the given node is a json object.
+	 */
+	boolean isObject(N node);
+
+	/**
+	 * @return true if the given node is a json array.
+	 */
+	boolean isArray(N node);
+
+	/**
+	 * @param object - object node.
+	 * @param name - name of the member.
+	 * @return value of the member, or null if the object has no such member.
+	 */
+	N getMember(N object, String name);
+
+	/**
+	 * @param array - array node.
+	 * @param idx - index of the element.
+	 * @return element at the given index, or null if the index is out of range.
+	 */
+	N getElement(N array, int idx);
+
+	/**
+	 * @param container - object or array node.
+	 * @return number of members of the object, or elements of the array.
+	 */
+	int size(N container);
+
+	/**
+	 * @param object - object node.
+	 * @return names of the members of the object, in the order of the object.
+	 */
+	Iterator<String> getMemberNames(N object);
+
+	/**
+	 * Adds the member to the object, or replaces its value if the object already has it.
+	 */
+	void putMember(N object, String name, N value);
+
+	/**
+	 * @return removed value, or null if the object had no such member.
+	 */
+	N removeMember(N object, String name);
+
+	/**
+	 * Inserts the value at the given index, shifting the elements at and above it to the right.
+	 *
+	 * @param idx - index between 0 and the size of the array.
+	 */
+	void insertElement(N array, int idx, N value);
+
+	/**
+	 * Appends the value at the end of the array.
+	 */
+	void addElement(N array, N value);
+
+	/**
+	 * Replaces the element at the given index.
+	 *
+	 * @param idx - index between 0 and the size of the array - 1.
+	 */
+	void setElement(N array, int idx, N value);
+
+	/**
+	 * Removes the element at the given index, shifting the elements above it to the left.
+	 *
+	 * @param idx - index between 0 and the size of the array - 1.
+	 * @return removed element.
+	 */
+	N removeElement(N array, int idx);
+
+	/**
+	 * @return copy of the given node, which can be modified without modifying the given node.
+	 */
+	N deepCopy(N node);
+
+	/**
+	 * @param node - node of this model.
+	 * @param value - jackson 1.x node, e.g. the value of a "test" operation.
+	 * @return true if both nodes represent the same json value.
+	 */
+	default boolean matches(N node, JsonNode value) {
+		return node.equals(fromJackson(value));
+	}
+
+	/**
+	 * Converts a jackson 1.x node, e.g. the value of a patch operation, to this tree model.
+	 *
+	 * @param node - jackson 1.x node, which is not modified.
+	 * @return new node of this model, which is not shared with the given node.
+	 */
+	N fromJackson(JsonNode node);
+
+	/**
+	 * Converts a node of this tree model to a jackson 1.x node.
+	 *
+	 * @param node - node of this model, which is not modified.
+	 * @return new jackson 1.x node, which is not shared with the given node.
+	 */
+	JsonNode toJackson(N node);
+}
@@ -0,0 +1,34 @@
+package com.nitin.json.patch;
+
+import org.codehaus.jackson.JsonNode;
+
+/**
+ * Outcome of {@link JsonPatch#applyWithInverse(JsonNode)}: the patched document, and the patch
+ * which turns it back into the original document.
+ *
+ * @author Nitin Patel
+ */
+public class AppliedPatch {
+
+	private final JsonNode result;
+	private final JsonPatch inverse;
+
+	AppliedPatch(JsonNode result, JsonPatch inverse) {
+		this.result = result;
+		this.inverse = inverse;
+	}
+
+	/**
+	 * @return patched document.
+	 */
+	public JsonNode getResult() {
+		return result;
+	}
+
+	/**
+	 * @return patch which undoes the applied patch on the patched document.
+	 */
+	public JsonPatch getInverse() {
+		return inverse;
+	}
+}
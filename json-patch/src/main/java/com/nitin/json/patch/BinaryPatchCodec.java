@@ -0,0 +1,406 @@
+package com.nitin.json.patch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.JsonNodeFactory;
+import org.codehaus.jackson.node.MissingNode;
+import org.codehaus.jackson.node.ObjectNode;
+
+import com.nitin.json.patch.exception.InvalidJsonPatchException;
+import com.nitin.json.patch.vo.PatchOperation;
+import com.nitin.json.patch.vo.PatchOperationType;
+import com.nitin.json.pointer.JsonPointer;
+import static com.nitin.json.util.LoggerUtils.*;
+
+/**
+ * Compact binary form of a {@link JsonPatch}, for storing and replicating patches.
+ *
+ * The reference tokens of the pointers and the field names of the values are strings which repeat
+ * across a patch, so they are written once in a dictionary at the start of the patch, and referenced
+ * by their position in the dictionary. Every operation is then written as:
+ * <ul>
+ * <li>its type, as one byte,</li>
+ * <li>its path, as the number of reference tokens followed by their dictionary positions,</li>
+ * <li>its from pointer, for "move" and "copy",</li>
+ * <li>its value, for "add", "replace" and "test", as a type tag followed by the content of the value:
+ * integers as variable length numbers, doubles as 8 bytes, strings as their UTF-8 bytes, and arrays
+ * and objects as their size followed by their elements or fields.</li>
+ * </ul>
+ * Numbers and sizes are written as variable length integers, 7 bits per byte. Decoding builds the
+ * operations from their members, without going through their json text. A patch decoded from its binary
+ * form has the same json form as the encoded patch, including the types of the numbers.
+ *
+ * @author Nitin Patel
+ */
+public class BinaryPatchCodec {
+
+	private static final int MAGIC = 0x4A504201; //"JPB", version 1
+	private static final PatchOperationType[] OP_TYPES = {PatchOperationType.add, PatchOperationType.remove,
+		PatchOperationType.replace, PatchOperationType.move, PatchOperationType.copy, PatchOperationType.test};
+	//a pointer which is not written as tokens, e.g. because it does not start with '/', is written as text
+	private static final int RAW_POINTER = 0;
+	private static final int NULL = 0, TRUE = 1, FALSE = 2, INT = 3, LONG = 4, BIG_INTEGER = 5, DOUBLE = 6,
+			DECIMAL = 7, TEXT = 8, ARRAY = 9, OBJECT = 10, BINARY = 11, MISSING = 12;
+
+	private BinaryPatchCodec() {
+	}
+
+	/**
+	 * @param patch - patch to encode.
+	 * @return binary form of the patch.
+	 */
+	public static byte[] encode(JsonPatch patch) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			encode(patch, bytes);
+		} catch (IOException e) {
+			//not thrown by a ByteArrayOutputStream
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Writes the binary form of the patch to the given stream, which is flushed but not closed.
+	 */
+	public static void encode(JsonPatch patch, OutputStream target) throws IOException {
+		List<PatchOperation> patchOperations = patch.getPatchOperations();
+		Map<String, Integer> dictionary = new LinkedHashMap<String, Integer>();
+		for (PatchOperation patchOp : patchOperations) {
+			collectTokens(patchOp.getPathPointer(), dictionary);
+			if (hasFrom(patchOp.getOpType()))
+				collectTokens(patchOp.getFromPointer(), dictionary);
+			if (hasValue(patchOp.getOpType()))
+				collectFieldNames(patchOp.getValue(), dictionary);
+		}
+
+		DataOutputStream out = new DataOutputStream(target);
+		out.writeInt(MAGIC);
+		writeVarInt(out, dictionary.size());
+		for (String token : dictionary.keySet()) {
+			writeText(out, token);
+		}
+		writeVarInt(out, patchOperations.size());
+		for (PatchOperation patchOp : patchOperations) {
+			out.writeByte(getOpCode(patchOp.getOpType()));
+			writePointer(out, patchOp.getPathPointer(), patchOp.getPath(), dictionary);
+			if (hasFrom(patchOp.getOpType()))
+				writePointer(out, patchOp.getFromPointer(), patchOp.getFrom(), dictionary);
+			if (hasValue(patchOp.getOpType()))
+				writeValue(out, patchOp.getValue(), dictionary);
+		}
+		out.flush();
+	}
+
+	/**
+	 * @param bytes - binary form of a patch.
+	 * @return decoded patch.
+	 * @throws InvalidJsonPatchException if the bytes are not the binary form of a patch.
+	 */
+	public static JsonPatch decode(byte[] bytes) throws InvalidJsonPatchException {
+		try {
+			return decode(new ByteArrayInputStream(bytes));
+		} catch (IOException e) {
+			//a truncated patch, as a ByteArrayInputStream does not fail otherwise
+			String errorMsg = "Binary patch is truncated: "+e.getMessage();
+			getLogger().log(Level.SEVERE, errorMsg, e);
+			throw new InvalidJsonPatchException(errorMsg, e);
+		}
+	}
+
+	/**
+	 * Reads the binary form of a patch from the given stream, which is not closed.
+	 */
+	public static JsonPatch decode(InputStream source) throws IOException, InvalidJsonPatchException {
+		DataInputStream in = new DataInputStream(source);
+		if (in.readInt() != MAGIC)
+			throwInvalidJsonPatchException("Not a binary json patch, or unsupported version");
+		int tokenCount = readSize(in);
+		List<String> tokens = new ArrayList<String>(Math.min(tokenCount, 1024));
+		for (int i = 0; i < tokenCount; i++) {
+			tokens.add(readText(in));
+		}
+		String[] dictionary = tokens.toArray(new String[tokenCount]);
+		int operationCount = readSize(in);
+		List<PatchOperation> patchOperations = new ArrayList<PatchOperation>(Math.min(operationCount, 1024));
+		for (int i = 0; i < operationCount; i++) {
+			int opCode = in.readUnsignedByte();
+			if (opCode >= OP_TYPES.length)
+				throwInvalidJsonPatchException("Invalid operation type "+opCode+" in binary json patch");
+			PatchOperationType opType = OP_TYPES[opCode];
+			String path = readPointer(in, dictionary);
+			String from = hasFrom(opType) ? readPointer(in, dictionary) : null;
+			JsonNode value = hasValue(opType) ? readValue(in, dictionary) : null;
+			patchOperations.add(new PatchOperation(opType, path, from, value));
+		}
+		return new JsonPatch(patchOperations);
+	}
+
+	private static void collectTokens(JsonPointer ptr, Map<String, Integer> dictionary) {
+		for (int i = 0; i < ptr.getTokenCount(); i++) {
+			addToDictionary(ptr.getReferenceToken(i), dictionary);
+		}
+	}
+
+	private static void collectFieldNames(JsonNode value, Map<String, Integer> dictionary) {
+		if (value.isObject()) {
+			Iterator<Map.Entry<String, JsonNode>> fields = value.getFields();
+			while (fields.hasNext()) {
+				Map.Entry<String, JsonNode> field = fields.next();
+				addToDictionary(field.getKey(), dictionary);
+				collectFieldNames(field.getValue(), dictionary);
+			}
+		} else if (value.isArray()) {
+			for (JsonNode element : value) {
+				collectFieldNames(element, dictionary);
+			}
+		}
+	}
+
+	private static void addToDictionary(String token, Map<String, Integer> dictionary) {
+		if (!dictionary.containsKey(token))
+			dictionary.put(token, dictionary.size());
+	}
+
+	/*
+	 * Writes the pointer as its tokens, when the tokens give back the same pointer text.
+	 */
+	private static void writePointer(DataOutputStream out, JsonPointer ptr, String text,
+			Map<String, Integer> dictionary) throws IOException {
+		String[] tokens = new String[ptr.getTokenCount()];
+		for (int i = 0; i < tokens.length; i++) {
+			tokens[i] = ptr.getReferenceToken(i);
+		}
+		if (!text.equals(toText(tokens))) {
+			writeVarInt(out, RAW_POINTER);
+			writeText(out, text);
+			return;
+		}
+		writeVarInt(out, tokens.length + 1);
+		for (String token : tokens) {
+			writeVarInt(out, dictionary.get(token));
+		}
+	}
+
+	private static String readPointer(DataInputStream in, String[] dictionary)
+			throws IOException, InvalidJsonPatchException {
+		int tokenCount = readSize(in);
+		if (tokenCount == RAW_POINTER)
+			return readText(in);
+		String[] tokens = new String[tokenCount - 1];
+		for (int i = 0; i < tokens.length; i++) {
+			tokens[i] = readToken(in, dictionary);
+		}
+		return toText(tokens);
+	}
+
+	private static String toText(String[] tokens) {
+		StringBuilder text = new StringBuilder();
+		for (String token : tokens) {
+			text.append(JsonPointer.FORWARD_SLASH);
+			text.append(JsonPointer.encodeReferenceToken(token));
+		}
+		return text.toString();
+	}
+
+	private static void writeValue(DataOutputStream out, JsonNode value, Map<String, Integer> dictionary)
+			throws IOException {
+		if (value.isMissingNode()) {
+			out.writeByte(MISSING);
+		} else if (value.isNull()) {
+			out.writeByte(NULL);
+		} else if (value.isBoolean()) {
+			out.writeByte(value.getBooleanValue() ? TRUE : FALSE);
+		} else if (value.isInt()) {
+			out.writeByte(INT);
+			writeVarLong(out, zigZag(value.getIntValue()));
+		} else if (value.isLong()) {
+			out.writeByte(LONG);
+			writeVarLong(out, zigZag(value.getLongValue()));
+		} else if (value.isBigInteger()) {
+			out.writeByte(BIG_INTEGER);
+			writeBytes(out, value.getBigIntegerValue().toByteArray());
+		} else if (value.isDouble()) {
+			out.writeByte(DOUBLE);
+			out.writeDouble(value.getDoubleValue());
+		} else if (value.isBigDecimal()) {
+			out.writeByte(DECIMAL);
+			writeText(out, value.getDecimalValue().toString());
+		} else if (value.isBinary()) {
+			out.writeByte(BINARY);
+			writeBytes(out, value.getBinaryValue());
+		} else if (value.isArray()) {
+			out.writeByte(ARRAY);
+			writeVarInt(out, value.size());
+			for (JsonNode element : value) {
+				writeValue(out, element, dictionary);
+			}
+		} else if (value.isObject()) {
+			out.writeByte(OBJECT);
+			writeVarInt(out, value.size());
+			Iterator<Map.Entry<String, JsonNode>> fields = value.getFields();
+			while (fields.hasNext()) {
+				Map.Entry<String, JsonNode> field = fields.next();
+				writeVarInt(out, dictionary.get(field.getKey()));
+				writeValue(out, field.getValue(), dictionary);
+			}
+		} else {
+			//text, and any other value node in its text form
+			out.writeByte(TEXT);
+			writeText(out, value.isTextual() ? value.getTextValue() : value.toString());
+		}
+	}
+
+	private static JsonNode readValue(DataInputStream in, String[] dictionary)
+			throws IOException, InvalidJsonPatchException {
+		JsonNodeFactory factory = JsonNodeFactory.instance;
+		int tag = in.readUnsignedByte();
+		switch (tag) {
+			case MISSING:
+				return MissingNode.getInstance();
+			case NULL:
+				return factory.nullNode();
+			case TRUE:
+				return factory.booleanNode(true);
+			case FALSE:
+				return factory.booleanNode(false);
+			case INT:
+				return factory.numberNode((int)unZigZag(readVarLong(in)));
+			case LONG:
+				return factory.numberNode(unZigZag(readVarLong(in)));
+			case BIG_INTEGER:
+				return factory.numberNode(new BigInteger(readBytes(in)));
+			case DOUBLE:
+				return factory.numberNode(in.readDouble());
+			case DECIMAL:
+				return factory.numberNode(new BigDecimal(readText(in)));
+			case TEXT:
+				return factory.textNode(readText(in));
+			case BINARY:
+				return factory.binaryNode(readBytes(in));
+			case ARRAY:
+				int elementCount = readSize(in);
+				ArrayNode array = factory.arrayNode();
+				for (int i = 0; i < elementCount; i++) {
+					array.add(readValue(in, dictionary));
+				}
+				return array;
+			case OBJECT:
+				int fieldCount = readSize(in);
+				ObjectNode object = factory.objectNode();
+				for (int i = 0; i < fieldCount; i++) {
+					String fieldName = readToken(in, dictionary);
+					object.put(fieldName, readValue(in, dictionary));
+				}
+				return object;
+			default:
+				throwInvalidJsonPatchException("Invalid value type "+tag+" in binary json patch");
+				return null;
+		}
+	}
+
+	private static String readToken(DataInputStream in, String[] dictionary)
+			throws IOException, InvalidJsonPatchException {
+		int idx = readSize(in);
+		if (idx >= dictionary.length)
+			throwInvalidJsonPatchException("Invalid token "+idx+" in binary json patch with "
+					+dictionary.length+" tokens");
+		return dictionary[idx];
+	}
+
+	private static int getOpCode(PatchOperationType opType) {
+		for (int i = 0; i < OP_TYPES.length; i++) {
+			if (OP_TYPES[i] == opType)
+				return i;
+		}
+		throw new IllegalArgumentException("Unknown operation type "+opType);
+	}
+
+	private static boolean hasFrom(PatchOperationType opType) {
+		return opType.getMembers().contains(PatchOperationType.Member.FROM);
+	}
+
+	private static boolean hasValue(PatchOperationType opType) {
+		return opType.getMembers().contains(PatchOperationType.Member.VALUE);
+	}
+
+	private static void writeText(DataOutputStream out, String text) throws IOException {
+		writeBytes(out, text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String readText(DataInputStream in) throws IOException, InvalidJsonPatchException {
+		return new String(readBytes(in), StandardCharsets.UTF_8);
+	}
+
+	private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+		writeVarInt(out, bytes.length);
+		out.write(bytes);
+	}
+
+	private static byte[] readBytes(DataInputStream in) throws IOException, InvalidJsonPatchException {
+		byte[] bytes = new byte[readSize(in)];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		writeVarLong(out, value & 0xFFFFFFFFL);
+	}
+
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int)(value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int)value);
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException, InvalidJsonPatchException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long)(b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throwInvalidJsonPatchException("Invalid number in binary json patch");
+		return 0;
+	}
+
+	private static int readSize(DataInputStream in) throws IOException, InvalidJsonPatchException {
+		long size = readVarLong(in);
+		if (size < 0 || size > Integer.MAX_VALUE)
+			throwInvalidJsonPatchException("Invalid size "+size+" in binary json patch");
+		return (int)size;
+	}
+
+	private static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static void throwInvalidJsonPatchException(String errorMsg) throws InvalidJsonPatchException {
+		getLogger().severe(errorMsg);
+		throw new InvalidJsonPatchException(errorMsg);
+	}
+}
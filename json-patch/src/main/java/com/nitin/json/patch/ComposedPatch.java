@@ -0,0 +1,34 @@
+package com.nitin.json.patch;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.nitin.json.patch.vo.PatchOperation;
+import com.nitin.json.patch.vo.PatchPrecondition;
+
+/**
+ * Patch equivalent to a sequence of patches, built by {@link JsonPatch#compose(JsonPatch...)}.
+ *
+ * On every document on which the sequence of patches succeeds, this patch succeeds and gives the
+ * same result. The reverse is only true on the documents which satisfy the {@link #getPreconditions()}:
+ * these are the facts which the original patches check but this patch does not.
+ *
+ * @author Nitin Patel
+ */
+public class ComposedPatch extends JsonPatch {
+
+	private final List<PatchPrecondition> preconditions;
+
+	ComposedPatch(List<PatchOperation> patchOperations, List<PatchPrecondition> preconditions) {
+		super(patchOperations);
+		this.preconditions = Collections.unmodifiableList(preconditions);
+	}
+
+	/**
+	 * @return facts about the documents the original patches are applied on, which this patch does
+	 * not check anymore. Empty if this patch fails on exactly the same documents as the original ones.
+	 */
+	public List<PatchPrecondition> getPreconditions() {
+		return preconditions;
+	}
+}
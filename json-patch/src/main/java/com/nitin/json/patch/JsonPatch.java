@@ -1,27 +1,53 @@
 package com.nitin.json.patch;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonParser;
 import org.codehaus.jackson.JsonProcessingException;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.JsonNodeFactory;
+import org.codehaus.jackson.node.ObjectNode;
+import com.nitin.json.node.JacksonNodeAdapter;
+import com.nitin.json.node.JsonNodeAdapter;
 import com.nitin.json.patch.exception.InvalidJsonPatchException;
 import com.nitin.json.patch.exception.JsonPatchException;
 import com.nitin.json.patch.vo.PatchOperation;
+import com.nitin.json.patch.vo.PatchPrecondition;
+import com.nitin.json.patch.vo.PatchResult;
+import com.nitin.json.util.ByteBufferInputStream;
+import com.nitin.json.util.JsonNodeUtils;
 import static com.nitin.json.util.LoggerUtils.*;
 /*
  * This is an implementation of RFC 6902:
  * https://tools.ietf.org/html/rfc6902
  * 
  * Implementation is based on Jackson library
+ * 
+ * Patches are immutable, so a parsed patch can be shared across threads, e.g. through PatchCache.
  */
 public class JsonPatch {
-	List<PatchOperation> patchOperations = new ArrayList<PatchOperation>();
+	final List<PatchOperation> patchOperations = new ArrayList<PatchOperation>();
 	private static ObjectMapper mapper = new ObjectMapper();
+	private static Executor defaultExecutor;
 
 	public JsonPatch(ArrayNode patchArray) throws InvalidJsonPatchException {
 		Iterator<JsonNode> patchElems = patchArray.getElements();
@@ -34,24 +60,448 @@ public class JsonPatch {
 		this((ArrayNode)mapper.readTree(patch));
 	}
 
+	/**
+	 * @param patch - json patch, encoded in UTF-8, UTF-16 or UTF-32.
+	 */
+	public JsonPatch(byte[] patch) throws InvalidJsonPatchException, JsonProcessingException, IOException {
+		this((ArrayNode)mapper.readTree(patch));
+	}
+
+	/**
+	 * @param patch - json patch, read from the remaining bytes of the buffer.
+	 */
+	public JsonPatch(ByteBuffer patch) throws InvalidJsonPatchException, JsonProcessingException, IOException {
+		this((ArrayNode)mapper.readTree(JsonNodeUtils.createParser(mapper.getJsonFactory(), patch)));
+	}
+
+	/**
+	 * @param patch - stream of the json patch, which is read but not closed.
+	 */
+	public JsonPatch(InputStream patch) throws InvalidJsonPatchException, JsonProcessingException, IOException {
+		this((ArrayNode)mapper.readTree(mapper.getJsonFactory().createJsonParser(patch)));
+	}
+
+	/**
+	 * @param patch - file of the json patch, which is memory-mapped while it is parsed.
+	 */
+	public JsonPatch(Path patch) throws InvalidJsonPatchException, JsonProcessingException, IOException {
+		this(ByteBufferInputStream.map(patch));
+	}
+
+	/**
+	 * @param patchOperations - operations of the patch, in the order they are applied.
+	 */
+	public JsonPatch(List<PatchOperation> patchOperations) {
+		this.patchOperations.addAll(patchOperations);
+	}
+
+	/**
+	 * Returns an equivalent patch with redundant operations folded, e.g. a value which is added and
+	 * then replaced is added with its final value. On any document this patch applies to, the optimized
+	 * patch gives the same result.
+	 * 
+	 * @return optimized patch, this patch is not modified.
+	 * @see PatchCompiler
+	 */
+	public JsonPatch optimize() {
+		return new JsonPatch(PatchCompiler.compile(patchOperations));
+	}
+
+	/**
+	 * Composes a sequence of patches, e.g. the patches from version 1 to 2, 2 to 3, ..., of a document,
+	 * into one patch which gives the same result as the patches applied one after the other. The
+	 * composition reasons on the paths and values of the operations only, no document is patched:
+	 * operations are folded as by {@link #optimize()}, across the patches.
+	 * 
+	 * Folded operations no longer check their facts about the document, e.g. that a replaced member
+	 * exists before the member is removed. These facts can not be known without the base document, so
+	 * they are reported by {@link ComposedPatch#getPreconditions()}.
+	 * 
+	 * @param patches - patches in the order they are applied.
+	 * @return composed patch, the given patches are not modified.
+	 */
+	public static ComposedPatch compose(JsonPatch... patches) {
+		List<PatchOperation> operations = new ArrayList<PatchOperation>();
+		for (JsonPatch patch : patches) {
+			operations.addAll(patch.patchOperations);
+		}
+		List<PatchPrecondition> preconditions = new ArrayList<PatchPrecondition>();
+		List<PatchOperation> composed = PatchCompiler.compile(operations, preconditions);
+		getLogger().fine(() -> "Composed "+patches.length+" patches with preconditions: "+preconditions);
+		return new ComposedPatch(composed, preconditions);
+	}
+
+	/**
+	 * @return operations of this patch, which can not be modified.
+	 */
+	public List<PatchOperation> getPatchOperations() {
+		return Collections.unmodifiableList(patchOperations);
+	}
+
+	/**
+	 * @return json representation of this patch.
+	 */
+	public ArrayNode toJsonNode() {
+		ArrayNode patchArray = JsonNodeFactory.instance.arrayNode();
+		for (PatchOperation patchOp : patchOperations) {
+			patchArray.add(patchOp.toJsonNode());
+		}
+		return patchArray;
+	}
+
+	@Override
+	public String toString() {
+		return toJsonNode().toString();
+	}
+
+	/**
+	 * Applies the patch on a copy of the given node. The source is copied once and every
+	 * operation is applied in place on that copy, so the given node is never modified,
+	 * even if one of the operations fails.
+	 * 
+	 * @param sourceNode - json document to be patched.
+	 * @return patched json document.
+	 * @throws JsonPatchException - if any of the patch operations fails.
+	 */
 	public JsonNode apply(JsonNode sourceNode) throws JsonPatchException {
+		return applyInPlace(JsonNodeUtils.deepCopy(sourceNode));
+	}
+	
+	/**
+	 * Applies the patch directly on the given node, without making a copy of it. This is meant for
+	 * callers who own the document and do not need the original after patching it.
+	 * 
+	 * Operations are applied one after the other on the given node. Each operation is atomic, but
+	 * the patch as a whole is not: if an operation fails, the operations before it remain applied
+	 * and the given node is left partially patched.
+	 * 
+	 * @param sourceNode - json document to be patched, which is modified by this method.
+	 * @return patched json document. This is the given node, unless the patch replaces the whole document.
+	 * @throws JsonPatchException - if any of the patch operations fails.
+	 */
+	public JsonNode applyInPlace(JsonNode sourceNode) throws JsonPatchException {
+		return applyInPlace(sourceNode, JacksonNodeAdapter.INSTANCE);
+	}
+
+	/**
+	 * Applies the patch on a copy of the given node, and builds the inverse patch while applying it.
+	 * 
+	 * @param sourceNode - json document to be patched, which is not modified.
+	 * @return patched document, with the patch which turns it back into the given document.
+	 * @throws JsonPatchException - if any of the patch operations fails.
+	 * @see #applyInPlaceWithInverse(JsonNode)
+	 */
+	public AppliedPatch applyWithInverse(JsonNode sourceNode) throws JsonPatchException {
+		return applyInPlaceWithInverse(JsonNodeUtils.deepCopy(sourceNode));
+	}
+
+	/**
+	 * Applies the patch directly on the given node, and builds the patch which undoes it while applying it.
+	 * The inverse patch only holds the values which the patch removes or overwrites, and the positions
+	 * of the values it inserts, so keeping it for a rollback costs the size of the change instead of a
+	 * copy of the document.
+	 * 
+	 * Unlike {@link #applyInPlace(JsonNode)}, the patch as a whole is atomic: if an operation fails, the
+	 * operations before it are undone, so the given node is left as it was.
+	 * 
+	 * @param sourceNode - json document to be patched, which is modified by this method.
+	 * @return patched document, with the patch which turns it back into the given document.
+	 * @throws JsonPatchException - if any of the patch operations fails.
+	 */
+	public AppliedPatch applyInPlaceWithInverse(JsonNode sourceNode) throws JsonPatchException {
 		JsonNode resultNode = sourceNode;
+		List<PatchOperation> inverseOperations = new ArrayList<PatchOperation>();
 		for (PatchOperation patchOp : patchOperations) {
-			resultNode = patchOp.apply(resultNode);
+			List<PatchOperation> inverse = PatchInverter.invert(patchOp, resultNode);
+			try {
+				resultNode = patchOp.applyInPlace(resultNode);
+			} catch (JsonPatchException e) {
+				rollback(sourceNode, resultNode, inverseOperations, e);
+				throw e;
+			}
+			//the operations which undo this one are applied before the ones undoing the previous operations
+			inverseOperations.addAll(0, inverse);
+		}
+		return new AppliedPatch(resultNode, new JsonPatch(inverseOperations));
+	}
+
+	/*
+	 * Undoes the applied operations. An operation on the root replaces the document by a new node, so
+	 * the content of the restored document is then put back into the given node.
+	 */
+	private static void rollback(JsonNode sourceNode, JsonNode resultNode, List<PatchOperation> inverseOperations,
+			JsonPatchException failure) {
+		try {
+			JsonNode restoredNode = new JsonPatch(inverseOperations).applyInPlace(resultNode);
+			if (restoredNode == sourceNode)
+				return;
+			if (sourceNode.isObject() && restoredNode.isObject()) {
+				((ObjectNode) sourceNode).removeAll();
+				((ObjectNode) sourceNode).putAll((ObjectNode) restoredNode);
+			} else if (sourceNode.isArray() && restoredNode.isArray()) {
+				((ArrayNode) sourceNode).removeAll();
+				((ArrayNode) sourceNode).addAll((ArrayNode) restoredNode);
+			}
+		} catch (JsonPatchException e) {
+			getLogger().log(Level.SEVERE, "Error occurred while rolling back the operations before "+failure.getMessage(), e);
+			failure.addSuppressed(e);
+		}
+	}
+
+	/**
+	 * Applies the patch on a copy of a json document of any tree model, which is patched through the
+	 * given adapter without converting it to text, e.g. a jackson 2.x tree with
+	 * {@link com.nitin.json.node.Jackson2NodeAdapter#INSTANCE}.
+	 * 
+	 * @param sourceNode - json document to be patched, which is not modified.
+	 * @param adapter - adapter of the tree model of the document.
+	 * @return patched json document.
+	 * @throws JsonPatchException - if any of the patch operations fails.
+	 * @see #apply(JsonNode)
+	 */
+	public <N> N apply(N sourceNode, JsonNodeAdapter<N> adapter) throws JsonPatchException {
+		return applyInPlace(adapter.deepCopy(sourceNode), adapter);
+	}
+
+	/**
+	 * Applies the patch directly on a json document of any tree model.
+	 * 
+	 * @param sourceNode - json document to be patched, which is modified by this method.
+	 * @param adapter - adapter of the tree model of the document.
+	 * @return patched json document.
+	 * @throws JsonPatchException - if any of the patch operations fails.
+	 * @see #applyInPlace(JsonNode)
+	 */
+	public <N> N applyInPlace(N sourceNode, JsonNodeAdapter<N> adapter) throws JsonPatchException {
+		N resultNode = sourceNode;
+		for (PatchOperation patchOp : patchOperations) {
+			resultNode = patchOp.applyInPlace(resultNode, adapter);
 		}
 		return resultNode;
 	}
 	
+	/**
+	 * Applies the patch on a copy of each of the given documents, using the default executor:
+	 * virtual threads when the JVM supports them, the common fork/join pool otherwise.
+	 * 
+	 * @see #applyAll(Collection, Executor)
+	 */
+	public List<PatchResult> applyAll(Collection<? extends JsonNode> sourceNodes) {
+		return applyAll(sourceNodes, getDefaultExecutor());
+	}
+
+	/**
+	 * Applies the patch on a copy of each of the given documents, in parallel on the given executor.
+	 * The operations are compiled once and shared by all the documents. A document on which the patch
+	 * fails does not stop the others, its failure is returned in its result.
+	 * 
+	 * @param sourceNodes - json documents to be patched, which are not modified.
+	 * @param executor - executor to apply the patch on, one task per document.
+	 * @return result of each document, in the order of the given documents.
+	 */
+	public List<PatchResult> applyAll(Collection<? extends JsonNode> sourceNodes, Executor executor) {
+		List<CompletableFuture<PatchResult>> futures = new ArrayList<CompletableFuture<PatchResult>>(sourceNodes.size());
+		for (final JsonNode sourceNode : sourceNodes) {
+			futures.add(CompletableFuture.supplyAsync(() -> applySafely(sourceNode), executor));
+		}
+		List<PatchResult> results = new ArrayList<PatchResult>(futures.size());
+		for (CompletableFuture<PatchResult> future : futures) {
+			results.add(future.join());
+		}
+		return results;
+	}
+
+	private PatchResult applySafely(JsonNode sourceNode) {
+		try {
+			return new PatchResult(apply(sourceNode));
+		} catch (JsonPatchException e) {
+			return new PatchResult(e);
+		} catch (RuntimeException e) {
+			String errorMsg = "Error occurred while applying the patch: "+e;
+			getLogger().log(Level.SEVERE, errorMsg, e);
+			return new PatchResult(new JsonPatchException(errorMsg, e));
+		}
+	}
+
+	/*
+	 * Executor which starts a virtual thread per task, on JVMs which have them, looked up by
+	 * reflection as this library is built for Java 8.
+	 */
+	private static synchronized Executor getDefaultExecutor() {
+		if (defaultExecutor == null) {
+			try {
+				defaultExecutor = (Executor)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			} catch (ReflectiveOperationException e) {
+				getLogger().fine("Virtual threads are not available, using the common fork/join pool");
+				defaultExecutor = ForkJoinPool.commonPool();
+			}
+		}
+		return defaultExecutor;
+	}
+	
 	public JsonNode apply(String sourceJson) throws JsonPatchException {
 	    JsonNode patchOutcome = null;
 	    try {
-	      patchOutcome = apply(mapper.readTree(sourceJson));
+	      patchOutcome = applyInPlace(mapper.readTree(sourceJson));
         } catch (IOException e) {
-            String errorMsg = "Error occurred while trying to parse the source json."
-                + " Corresponding error message is: "+e.getMessage();
-            getLogger().log(Level.SEVERE, errorMsg, e);
-            throw new JsonPatchException(errorMsg, e);
+            throw sourceParseException(e);
         }
 	    return patchOutcome; 
 	}
+
+	/**
+	 * Applies the patch on the given json, which is parsed straight from its bytes.
+	 * 
+	 * @param sourceJson - json document, encoded in UTF-8, UTF-16 or UTF-32.
+	 * @return patched json document.
+	 * @throws JsonPatchException - if the source can not be parsed, or any of the patch operations fails.
+	 */
+	public JsonNode apply(byte[] sourceJson) throws JsonPatchException {
+		try {
+			return applyInPlace(mapper.readTree(sourceJson));
+		} catch (IOException e) {
+			throw sourceParseException(e);
+		}
+	}
+
+	/**
+	 * Applies the patch on the json in the remaining bytes of the given buffer, e.g. a socket buffer.
+	 * The position of the buffer is not modified.
+	 * 
+	 * @see #apply(byte[])
+	 */
+	public JsonNode apply(ByteBuffer sourceJson) throws JsonPatchException {
+		try {
+			return applyInPlace(mapper.readTree(JsonNodeUtils.createParser(mapper.getJsonFactory(), sourceJson)));
+		} catch (IOException e) {
+			throw sourceParseException(e);
+		}
+	}
+
+	/**
+	 * Applies the patch on the json read from the given stream, which is not closed.
+	 * 
+	 * @see #apply(byte[])
+	 */
+	public JsonNode apply(InputStream sourceJson) throws JsonPatchException {
+		try {
+			return applyInPlace(mapper.readTree(mapper.getJsonFactory().createJsonParser(sourceJson)));
+		} catch (IOException e) {
+			throw sourceParseException(e);
+		}
+	}
+
+	/**
+	 * Applies the patch on the json in the given file, which is memory-mapped while it is parsed.
+	 * 
+	 * @see #apply(byte[])
+	 */
+	public JsonNode apply(Path sourceJson) throws JsonPatchException {
+		try {
+			return apply(ByteBufferInputStream.map(sourceJson));
+		} catch (IOException e) {
+			throw sourceParseException(e);
+		}
+	}
+
+	/**
+	 * Applies the patch on the json in the given file, and writes the patched json to the given stream
+	 * in UTF-8, without building it as a string. The stream is flushed but not closed.
+	 * 
+	 * @see #apply(Path)
+	 */
+	public void apply(Path sourceJson, OutputStream target) throws JsonPatchException {
+		JsonNode patchOutcome = apply(sourceJson);
+		try {
+			JsonGenerator generator = mapper.getJsonFactory().createJsonGenerator(target, JsonEncoding.UTF8);
+			mapper.writeTree(generator, patchOutcome);
+			generator.flush();
+		} catch (IOException e) {
+			String errorMsg = "Error occurred while trying to write the patched json."
+					+ " Corresponding error message is: "+e.getMessage();
+			getLogger().log(Level.SEVERE, errorMsg, e);
+			throw new JsonPatchException(errorMsg, e);
+		}
+	}
+
+	private JsonPatchException sourceParseException(IOException e) {
+		String errorMsg = "Error occurred while trying to parse the source json."
+				+ " Corresponding error message is: "+e.getMessage();
+		getLogger().log(Level.SEVERE, errorMsg, e);
+		return new JsonPatchException(errorMsg, e);
+	}
+
+	/**
+	 * Applies the patch while streaming the source json from the given parser to the given generator.
+	 * 
+	 * Only the subtrees which the patch operations can read or modify are read as trees, everything
+	 * else is copied token by token, so the memory needed is bounded by the size of those subtrees,
+	 * not by the size of the source: the target value for "add", "remove" and "replace" of an object
+	 * member, which is not read at all if it is overwritten or removed, the parent array for those of
+	 * an array element, the target value for "test", and the common ancestor of both locations for
+	 * "move" and "copy". Operations which need random access across the document, like a "move"
+	 * between two top level members, make the whole source to be read as a tree.
+	 * 
+	 * As the result is written while the source is read, the output is incomplete if the patch fails
+	 * and must be discarded.
+	 * 
+	 * @param parser - parser of the source json, positioned before the first token of the source.
+	 * @param generator - generator to which the patched json is written.
+	 * @throws JsonPatchException - if any of the patch operations fails, or the source can not be read.
+	 */
+	public void applyStreaming(JsonParser parser, JsonGenerator generator) throws JsonPatchException {
+		new StreamingPatchEngine(patchOperations).apply(parser, generator);
+	}
+	
+	/**
+	 * Streaming variant of {@link #apply(String)}, which reads the source json from the given stream
+	 * and writes the patched json to the given output stream.
+	 * 
+	 * @see #applyStreaming(JsonParser, JsonGenerator)
+	 */
+	public void applyStreaming(InputStream source, OutputStream target) throws JsonPatchException {
+		try {
+			applyStreaming(mapper.getJsonFactory().createJsonParser(source),
+					mapper.getJsonFactory().createJsonGenerator(target, JsonEncoding.UTF8));
+		} catch (IOException e) {
+			throwJsonPatchException(e);
+		}
+	}
+	
+	/**
+	 * Streaming variant of {@link #apply(Path, OutputStream)}, which streams the source json from the
+	 * memory-mapped file to the given output stream.
+	 * 
+	 * @see #applyStreaming(JsonParser, JsonGenerator)
+	 */
+	public void applyStreaming(Path source, OutputStream target) throws JsonPatchException {
+		try {
+			applyStreaming(JsonNodeUtils.createParser(mapper.getJsonFactory(), ByteBufferInputStream.map(source)),
+					mapper.getJsonFactory().createJsonGenerator(target, JsonEncoding.UTF8));
+		} catch (IOException e) {
+			throwJsonPatchException(e);
+		}
+	}
+	
+	/**
+	 * Streaming variant of {@link #apply(String)}, which reads the source json from the given reader
+	 * and writes the patched json to the given writer.
+	 * 
+	 * @see #applyStreaming(JsonParser, JsonGenerator)
+	 */
+	public void applyStreaming(Reader source, Writer target) throws JsonPatchException {
+		try {
+			applyStreaming(mapper.getJsonFactory().createJsonParser(source),
+					mapper.getJsonFactory().createJsonGenerator(target));
+		} catch (IOException e) {
+			throwJsonPatchException(e);
+		}
+	}
+	
+	private void throwJsonPatchException(IOException e) throws JsonPatchException {
+		String errorMsg = "Error occurred while trying to stream the source json."
+				+ " Corresponding error message is: "+e.getMessage();
+		getLogger().log(Level.SEVERE, errorMsg, e);
+		throw new JsonPatchException(errorMsg, e);
+	}
 }
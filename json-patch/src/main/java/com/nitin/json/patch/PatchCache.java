@@ -0,0 +1,159 @@
+package com.nitin.json.patch;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.codehaus.jackson.JsonProcessingException;
+
+import com.nitin.json.patch.exception.InvalidJsonPatchException;
+
+/**
+ * Bounded cache of parsed patches by their json text or bytes, for services which receive the same
+ * few patches over and over, e.g. templated rollouts. A hit skips parsing and validating the patch.
+ * When the cache is full, the least recently used patch is evicted.
+ *
+ * Usage:
+ * <pre>
+ * PatchCache patchCache = new PatchCache(1000);
+ * JsonNode result = patchCache.get(patchText).apply(document);
+ * </pre>
+ * The cached patches are shared by every caller, which is safe as patches are immutable. Patches
+ * which fail to parse are not cached. Instances are thread safe.
+ *
+ * @author Nitin Patel
+ */
+public class PatchCache {
+
+	private final int maxSize;
+	//keys are the patch texts, and the patch bytes wrapped in buffers, which compare by content
+	private final LruMap patches;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param maxSize - maximum number of cached patches.
+	 */
+	public PatchCache(int maxSize) {
+		if (maxSize < 1)
+			throw new IllegalArgumentException("Maximum size of the cache must be positive: "+maxSize);
+		this.maxSize = maxSize;
+		patches = new LruMap(maxSize, evictions);
+	}
+
+	/**
+	 * @param patch - json patch.
+	 * @return parsed patch, from the cache if the same text was parsed before.
+	 * @see JsonPatch#JsonPatch(String)
+	 */
+	public JsonPatch get(String patch) throws InvalidJsonPatchException, JsonProcessingException, IOException {
+		JsonPatch jsonPatch = lookup(patch);
+		return jsonPatch != null ? jsonPatch : store(patch, new JsonPatch(patch));
+	}
+
+	/**
+	 * @param patch - json patch, encoded in UTF-8, UTF-16 or UTF-32, which is copied if it is cached.
+	 * @return parsed patch, from the cache if the same bytes were parsed before.
+	 * @see JsonPatch#JsonPatch(byte[])
+	 */
+	public JsonPatch get(byte[] patch) throws InvalidJsonPatchException, JsonProcessingException, IOException {
+		JsonPatch jsonPatch = lookup(ByteBuffer.wrap(patch));
+		return jsonPatch != null ? jsonPatch : store(ByteBuffer.wrap(patch.clone()), new JsonPatch(patch));
+	}
+
+	private synchronized JsonPatch lookup(Object key) {
+		JsonPatch jsonPatch = patches.get(key);
+		if (jsonPatch == null)
+			misses.increment();
+		else
+			hits.increment();
+		return jsonPatch;
+	}
+
+	/*
+	 * Caches a parsed patch. A patch parsed meanwhile by another thread is kept, so every caller
+	 * shares it.
+	 */
+	private synchronized JsonPatch store(Object key, JsonPatch jsonPatch) {
+		JsonPatch cached = patches.get(key);
+		if (cached != null)
+			return cached;
+		patches.put(key, jsonPatch);
+		return jsonPatch;
+	}
+
+	/**
+	 * @return maximum number of cached patches.
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return number of cached patches.
+	 */
+	public synchronized int size() {
+		return patches.size();
+	}
+
+	/**
+	 * Removes every cached patch. The counters are not reset.
+	 */
+	public synchronized void clear() {
+		patches.clear();
+	}
+
+	/**
+	 * @return number of lookups which found the patch in the cache.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return number of lookups which parsed the patch.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return number of patches evicted to keep the cache within its maximum size.
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/*
+	 * Map in access order which removes its least recently used entry once it is larger than its
+	 * maximum size, counting the evictions.
+	 */
+	private static class LruMap extends LinkedHashMap<Object, JsonPatch> {
+		private static final long serialVersionUID = 1L;
+		private final int maxSize;
+		private final LongAdder evictions;
+
+		LruMap(int maxSize, LongAdder evictions) {
+			super(16, 0.75f, true);
+			this.maxSize = maxSize;
+			this.evictions = evictions;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Object, JsonPatch> eldest) {
+			if (size() <= maxSize)
+				return false;
+			evictions.increment();
+			return true;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "patch cache {size: "+size()+"/"+maxSize+", hits: "+getHits()+", misses: "+getMisses()
+				+", evictions: "+getEvictions()+"}";
+	}
+}
@@ -0,0 +1,308 @@
+package com.nitin.json.patch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.jackson.JsonNode;
+
+import com.nitin.json.patch.exception.JsonPatchException;
+import com.nitin.json.patch.vo.PatchOperation;
+import com.nitin.json.patch.vo.PatchOperationType;
+import com.nitin.json.patch.vo.PatchPrecondition;
+import com.nitin.json.pointer.JsonPointer;
+import com.nitin.json.util.JsonNodeUtils;
+import static com.nitin.json.util.LoggerUtils.*;
+
+/**
+ * Rewrites a list of patch operations into a shorter equivalent one. On every document on which the
+ * original operations succeed, the compiled operations succeed too and give the same result.
+ *
+ * Every operation touches a set of locations: its path, the parent array of its path for the operations
+ * which shift array elements, and the from location for "move" and "copy". Two operations which touch
+ * unrelated locations, i.e. none is inside the other, can be swapped. So each operation is paired with
+ * the latest operation before it which touches a related location, and the pair is rewritten when
+ * possible:
+ * <ul>
+ * <li>a write followed by a "replace" or a member "add" of the same path keeps only the last value,</li>
+ * <li>an array "add" or "copy" followed by a "remove" of the same index cancel each other,</li>
+ * <li>a "replace" followed by a "remove" of the same path becomes the "remove",</li>
+ * <li>an operation inside a location which is later replaced or removed is dropped,</li>
+ * <li>an operation inside a value just written by "add" or "replace" is applied on that value,
+ * e.g. nested replaces are merged into the replace of their parent,</li>
+ * <li>a "test" of a value just written, or just tested, is dropped.</li>
+ * </ul>
+ * Rewriting is repeated until the operations do not change anymore.
+ *
+ * @author Nitin Patel
+ */
+public class PatchCompiler {
+
+	/**
+	 * Number of operations searched backwards for the operation to pair an operation with,
+	 * which bounds the compile time of large patches.
+	 */
+	public static final int MAX_LOOKBACK = 256;
+
+	private PatchCompiler() {
+	}
+
+	/**
+	 * @param patchOperations - operations to compile, which are not modified.
+	 * @return equivalent operations, possibly fewer.
+	 */
+	public static List<PatchOperation> compile(List<PatchOperation> patchOperations) {
+		return compile(patchOperations, null);
+	}
+
+	/*
+	 * Compiles the operations, and adds the facts checked by the operations which are folded away,
+	 * and not by the operations which replace them, to the given preconditions if not null.
+	 */
+	static List<PatchOperation> compile(List<PatchOperation> patchOperations, List<PatchPrecondition> preconditions) {
+		List<PatchOperation> compiled = new ArrayList<PatchOperation>(patchOperations);
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			List<PatchOperation> pass = new ArrayList<PatchOperation>(compiled.size());
+			for (PatchOperation patchOp : compiled) {
+				changed |= append(pass, patchOp, preconditions);
+			}
+			compiled = pass;
+		}
+		int compiledSize = compiled.size();
+		getLogger().fine(() -> "Compiled "+patchOperations.size()+" patch operations into "+compiledSize);
+		return compiled;
+	}
+
+	/*
+	 * Appends the operation to the compiled ones, rewriting it with the latest related operation
+	 * as long as possible. Returns true if any rewriting happened.
+	 */
+	private static boolean append(List<PatchOperation> compiled, PatchOperation patchOp, List<PatchPrecondition> preconditions) {
+		int position = compiled.size();
+		boolean changed = false;
+		while (patchOp != null) {
+			int related = findRelated(compiled, position, patchOp);
+			List<PatchOperation> combined = related < 0 ? null : combine(compiled.get(related), patchOp, preconditions);
+			if (combined == null) {
+				compiled.add(position, patchOp);
+				return changed;
+			}
+			//the operation is moved back to the related one, which the combination replaces
+			changed = true;
+			compiled.remove(related);
+			position = related;
+			patchOp = combined.isEmpty() ? null : combined.get(0);
+		}
+		return changed;
+	}
+
+	private static int findRelated(List<PatchOperation> compiled, int position, PatchOperation patchOp) {
+		List<JsonPointer> locations = getLocations(patchOp);
+		for (int i = position - 1; i >= 0 && i >= position - MAX_LOOKBACK; i--) {
+			if (isRelated(getLocations(compiled.get(i)), locations))
+				return i;
+		}
+		return -1;
+	}
+
+	/*
+	 * Returns the operation which has the same effect as the given operations applied one after the
+	 * other, as an empty list if they cancel each other, or null if they can not be combined.
+	 */
+	private static List<PatchOperation> combine(PatchOperation first, PatchOperation second,
+			List<PatchPrecondition> preconditions) {
+		JsonPointer firstPath = first.getPathPointer();
+		JsonPointer secondPath = second.getPathPointer();
+		PatchOperationType firstType = first.getOpType();
+
+		if (overwrites(second) && firstType != PatchOperationType.test && isInside(first, secondPath)) {
+			dropChecks(first, false, preconditions);
+			return Collections.singletonList(second);
+		}
+		if (writesValue(first) && !isAppend(firstPath) && isInside(second, firstPath))
+			return foldIntoValue(first, second);
+		if (!isSameLocation(firstPath, secondPath) || isAppend(firstPath))
+			return null;
+
+		switch (second.getOpType()) {
+			case replace:
+				if (firstType == PatchOperationType.replace)
+					return Collections.singletonList(second);
+				if (firstType == PatchOperationType.add || firstType == PatchOperationType.copy) {
+					dropChecks(first, true, preconditions);
+					return Collections.singletonList(new PatchOperation(PatchOperationType.add,
+							second.getPath(), null, second.getValue()));
+				}
+				return null;
+			case add:
+				if ((secondPath.isEmpty() || !secondPath.isLastTokenArrayIndex()) && (firstType == PatchOperationType.add
+						|| firstType == PatchOperationType.replace || firstType == PatchOperationType.copy)) {
+					dropChecks(first, true, preconditions);
+					return Collections.singletonList(second);
+				}
+				return null;
+			case remove:
+				if (firstType == PatchOperationType.replace) {
+					//removing an array element checks that it exists, removing a member does not
+					if (secondPath.isEmpty() || !secondPath.isLastTokenArrayIndex())
+						dropChecks(first, false, preconditions);
+					return Collections.singletonList(second);
+				}
+				if (!firstPath.isEmpty() && firstPath.isLastTokenArrayIndex()
+						&& (firstType == PatchOperationType.add || firstType == PatchOperationType.copy)) {
+					dropChecks(first, false, preconditions);
+					return Collections.emptyList();
+				}
+				return null;
+			case test:
+				if ((writesValue(first) || firstType == PatchOperationType.test)
+						&& first.getValue().equals(second.getValue()))
+					return Collections.singletonList(first);
+				return null;
+			default:
+				return null;
+		}
+	}
+
+	/*
+	 * Records the facts which the dropped operation checks. The check of the parent of its path is
+	 * skipped if the operation replacing it checks the same parent.
+	 */
+	private static void dropChecks(PatchOperation dropped, boolean parentChecked, List<PatchPrecondition> preconditions) {
+		if (preconditions == null)
+			return;
+		JsonPointer path = dropped.getPathPointer();
+		switch (dropped.getOpType()) {
+			case move:
+			case copy:
+				preconditions.add(new PatchPrecondition(dropped, "\""+dropped.getFrom()+"\" exists"));
+				//the path is checked like the path of an "add"
+			case add:
+				if (!parentChecked && !path.isEmpty())
+					preconditions.add(new PatchPrecondition(dropped, describeParent(path)));
+				break;
+			case replace:
+				if (!path.isEmpty())
+					preconditions.add(new PatchPrecondition(dropped, "\""+path+"\" exists"));
+				break;
+			case remove:
+				preconditions.add(new PatchPrecondition(dropped, path.isEmpty() || path.isLastTokenArrayIndex() ?
+						"\""+path+"\" exists" : describeParent(path)));
+				break;
+			case test:
+				preconditions.add(new PatchPrecondition(dropped, "\""+path+"\" is "+dropped.getValue()));
+				break;
+		}
+	}
+
+	private static String describeParent(JsonPointer path) {
+		if (path.isLastTokenArrayIndex())
+			return "\""+path.parent()+"\" is an array of at least "+path.getLastArrayIndex()+" elements";
+		if (isAppend(path))
+			return "\""+path.parent()+"\" is an array";
+		return "\""+path.parent()+"\" is an object";
+	}
+
+	/*
+	 * Applies the second operation on the value written by the first one.
+	 */
+	private static List<PatchOperation> foldIntoValue(PatchOperation first, PatchOperation second) {
+		int depth = first.getPathPointer().getTokenCount();
+		JsonNode value;
+		try {
+			value = StreamingPatchEngine.rebase(second, depth).applyInPlace(JsonNodeUtils.deepCopy(first.getValue()));
+		} catch (JsonPatchException e) {
+			//the original operations fail as well, keep them as they are
+			return null;
+		}
+		return Collections.singletonList(new PatchOperation(first.getOpType(), first.getPath(), null, value));
+	}
+
+	/*
+	 * Returns the locations which the given operation reads or writes.
+	 */
+	private static List<JsonPointer> getLocations(PatchOperation patchOp) {
+		JsonPointer pathLocation = getWriteLocation(patchOp.getPathPointer());
+		switch (patchOp.getOpType()) {
+			case test:
+			case replace:
+				return Collections.singletonList(patchOp.getPathPointer());
+			case move:
+				List<JsonPointer> moveLocations = new ArrayList<JsonPointer>(2);
+				moveLocations.add(getWriteLocation(patchOp.getFromPointer()));
+				moveLocations.add(pathLocation);
+				return moveLocations;
+			case copy:
+				List<JsonPointer> copyLocations = new ArrayList<JsonPointer>(2);
+				copyLocations.add(patchOp.getFromPointer());
+				copyLocations.add(pathLocation);
+				return copyLocations;
+			default:
+				return Collections.singletonList(pathLocation);
+		}
+	}
+
+	/*
+	 * Adding or removing an array element shifts the elements after it, so it writes the whole array.
+	 */
+	private static JsonPointer getWriteLocation(JsonPointer ptr) {
+		if (!ptr.isEmpty() && (ptr.isLastTokenArrayIndex() || isAppend(ptr)))
+			return ptr.parent();
+		return ptr;
+	}
+
+	private static boolean isRelated(List<JsonPointer> locations, List<JsonPointer> otherLocations) {
+		for (JsonPointer location : locations) {
+			for (JsonPointer otherLocation : otherLocations) {
+				if (location.startsWith(otherLocation) || otherLocation.startsWith(location))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Checks if everything the operation writes, and for "test" reads, is strictly inside the location.
+	 */
+	private static boolean isInside(PatchOperation patchOp, JsonPointer location) {
+		if (!isStrictlyInside(patchOp.getPathPointer(), location))
+			return false;
+		PatchOperationType opType = patchOp.getOpType();
+		return opType != PatchOperationType.move && opType != PatchOperationType.copy
+				|| isStrictlyInside(patchOp.getFromPointer(), location);
+	}
+
+	private static boolean isStrictlyInside(JsonPointer ptr, JsonPointer location) {
+		return ptr.getTokenCount() > location.getTokenCount() && ptr.startsWith(location);
+	}
+
+	private static boolean isSameLocation(JsonPointer ptr, JsonPointer other) {
+		return ptr.getTokenCount() == other.getTokenCount() && ptr.startsWith(other);
+	}
+
+	/*
+	 * Checks if the operation sets the value of its path, whatever was there before.
+	 */
+	private static boolean overwrites(PatchOperation patchOp) {
+		switch (patchOp.getOpType()) {
+			case replace:
+			case remove:
+				return true;
+			case add:
+				return patchOp.getPathPointer().isEmpty() || !patchOp.getPathPointer().isLastTokenArrayIndex()
+						&& !isAppend(patchOp.getPathPointer());
+			default:
+				return false;
+		}
+	}
+
+	private static boolean writesValue(PatchOperation patchOp) {
+		return patchOp.getOpType() == PatchOperationType.add || patchOp.getOpType() == PatchOperationType.replace;
+	}
+
+	private static boolean isAppend(JsonPointer ptr) {
+		return !ptr.isEmpty() && JsonPointer.PATH_HYPHEN.equals(ptr.getLastReferenceToken());
+	}
+}
@@ -0,0 +1,170 @@
+package com.nitin.json.patch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.jackson.JsonNode;
+
+import com.nitin.json.patch.vo.PatchOperation;
+import com.nitin.json.patch.vo.PatchOperationType;
+import com.nitin.json.pointer.JsonPointer;
+import com.nitin.json.pointer.exception.JsonPointerException;
+import com.nitin.json.util.JsonNodeUtils;
+
+/*
+ * Computes the operations which undo a patch operation, from the document it is about to be applied on.
+ *
+ * Only the values which the operation removes or overwrites are kept, and they are not copied: once
+ * removed from the document, nothing modifies them anymore. Values which stay in the document, like the
+ * value moved into one of its ancestors, are copied. Array appends ("-") are undone by removing
+ * the index the element is appended at.
+ */
+class PatchInverter {
+
+	private PatchInverter() {
+	}
+
+	/*
+	 * Returns the operations which undo the given operation once it is applied on the given document,
+	 * in the order they must be applied, or null if the operation can not be applied on the document.
+	 */
+	static List<PatchOperation> invert(PatchOperation patchOp, JsonNode document) {
+		JsonPointer path = patchOp.getPathPointer();
+		try {
+			switch (patchOp.getOpType()) {
+				case add:
+				case copy:
+					return Collections.singletonList(undoWrite(path, document));
+				case replace:
+					//replacing a missing member adds it
+					return Collections.singletonList(path.isEmpty() || !path.isLastTokenArrayIndex() ?
+							undoWrite(path, document) : replaceOp(path, path.getValue(document)));
+				case remove:
+					//removing a missing member does nothing
+					if (!path.isEmpty() && !path.isLastTokenArrayIndex()
+							&& path.getParentNode(document).get(path.getLastReferenceToken()) == null)
+						return Collections.emptyList();
+					return Collections.singletonList(putOp(path, path.getParentNode(document), path.getValue(document)));
+				case move:
+					return invertMove(patchOp, document);
+				default:
+					return Collections.emptyList();
+			}
+		} catch (JsonPointerException e) {
+			//the operation fails on this document, so there is nothing to undo
+			return null;
+		}
+	}
+
+	/*
+	 * The move removes the from location and adds its value at the path, so it is undone by moving
+	 * the value back, and by adding the member which the move overwrote, if any.
+	 */
+	private static List<PatchOperation> invertMove(PatchOperation patchOp, JsonNode document) throws JsonPointerException {
+		JsonPointer from = patchOp.getFromPointer();
+		JsonPointer path = patchOp.getPathPointer();
+		if (from.isEmpty())
+			throw new JsonPointerException("Json pointer \"\" can not be moved");
+		JsonNode moved = from.getValue(document);
+		if (from.equals(path))
+			return Collections.emptyList();
+		//moving a value into itself, which RFC 6902 forbids but which is applied on the shifted parent,
+		//is undone by putting back the parent
+		if (path.getTokenCount() > from.getTokenCount() && path.startsWith(from))
+			return Collections.singletonList(replaceOp(from.parent(), JsonNodeUtils.deepCopy(from.getParentNode(document))));
+		//moving a value into one of its ancestors overwrites that ancestor, unless it is an array element,
+		//so the ancestor is put back without the moved value, and then the moved value, which the next
+		//operations may modify, is added back
+		if (from.getTokenCount() > path.getTokenCount() && from.startsWith(path)
+				&& (path.isEmpty() || !path.isLastTokenArrayIndex())) {
+			List<PatchOperation> inverse = new ArrayList<PatchOperation>(2);
+			inverse.add(replaceOp(path, path.getValue(document)));
+			inverse.add(putOp(from, from.getParentNode(document), JsonNodeUtils.deepCopy(moved)));
+			return inverse;
+		}
+		//"-" can not be the target of a move into an object, so a member named "-" is put back
+		//with its value instead, once the path is undone
+		JsonNode fromParent = from.getParentNode(document);
+		if (isAppend(from) && !fromParent.isArray()) {
+			List<PatchOperation> inverse = new ArrayList<PatchOperation>(2);
+			inverse.add(undoWrite(path, path.getParentNode(document), 0));
+			inverse.add(replaceOp(from, JsonNodeUtils.deepCopy(moved)));
+			return inverse;
+		}
+		//the path is resolved once the from location is removed, so its parent is found at the
+		//corresponding location of the document before the move
+		JsonPointer target = beforeRemoval(path, from, document);
+		//removing the from location shrinks the target array if it is the same array
+		int removed = isAppend(path) && from.parent().equals(path.parent()) ? 1 : 0;
+		PatchOperation undo = undoWrite(path, target.getParentNode(document), removed);
+		List<PatchOperation> inverse = new ArrayList<PatchOperation>(2);
+		inverse.add(new PatchOperation(PatchOperationType.move,
+				patchOp.getFrom(), undo.getOpType() == PatchOperationType.remove ? undo.getPath() : path.getJsonPtr(), null));
+		//once the value is moved back, the overwritten member is found where it was before the move
+		if (undo.getOpType() == PatchOperationType.replace)
+			inverse.add(new PatchOperation(PatchOperationType.add, target.getJsonPtr(), null, undo.getValue()));
+		return inverse;
+	}
+
+	/*
+	 * Returns the pointer which, in the document before the move, refers to the location the path
+	 * refers to once the from element is removed: the elements after it, in its array, are shifted
+	 * one position to the left, so an index of that array in an ancestor of the path is one more
+	 * before the removal.
+	 */
+	private static JsonPointer beforeRemoval(JsonPointer path, JsonPointer from, JsonNode document) throws JsonPointerException {
+		int depth = from.getTokenCount() - 1;
+		if (!from.isLastTokenArrayIndex() || path.getTokenCount() <= depth + 1 || !path.startsWith(from.parent())
+				|| path.getArrayIndex(depth) < from.getLastArrayIndex() || !from.getParentNode(document).isArray())
+			return path;
+		return JsonPointer.compile(from.parent().getJsonPtr()+JsonPointer.FORWARD_SLASH+(path.getArrayIndex(depth) + 1)
+				+path.subPointer(depth + 1).getJsonPtr());
+	}
+
+	/*
+	 * Undoes a value written at the path: an inserted element or a new member is removed, an
+	 * overwritten member or document gets its value back.
+	 */
+	private static PatchOperation undoWrite(JsonPointer path, JsonNode document) throws JsonPointerException {
+		if (path.isEmpty())
+			return replaceOp(path, document);
+		return undoWrite(path, path.getParentNode(document), 0);
+	}
+
+	/*
+	 * Undoes a value written at the path in the given parent, which lost the given number of elements
+	 * before the write.
+	 */
+	private static PatchOperation undoWrite(JsonPointer path, JsonNode parent, int removedElements) {
+		if (path.isLastTokenArrayIndex())
+			return removeOp(path.getJsonPtr());
+		//"-" is a member name in an object
+		if (isAppend(path) && parent.isArray())
+			return removeOp(path.parent().getJsonPtr()+JsonPointer.FORWARD_SLASH+(parent.size() - removedElements));
+		JsonNode overwritten = parent.get(path.getLastReferenceToken());
+		return overwritten == null ? removeOp(path.getJsonPtr()) : replaceOp(path, overwritten);
+	}
+
+	/*
+	 * Puts a value back at the given location. "add" treats "-" as an array append, so a member
+	 * named "-" is put back by "replace", which adds a missing member.
+	 */
+	private static PatchOperation putOp(JsonPointer path, JsonNode parent, JsonNode value) {
+		if (isAppend(path) && !parent.isArray())
+			return replaceOp(path, value);
+		return new PatchOperation(PatchOperationType.add, path.getJsonPtr(), null, value);
+	}
+
+	private static PatchOperation removeOp(String path) {
+		return new PatchOperation(PatchOperationType.remove, path, null, null);
+	}
+
+	private static PatchOperation replaceOp(JsonPointer path, JsonNode value) {
+		return new PatchOperation(PatchOperationType.replace, path.getJsonPtr(), null, value);
+	}
+
+	private static boolean isAppend(JsonPointer ptr) {
+		return !ptr.isEmpty() && JsonPointer.PATH_HYPHEN.equals(ptr.getLastReferenceToken());
+	}
+}
@@ -0,0 +1,329 @@
+package com.nitin.json.patch;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.NullNode;
+
+import com.nitin.json.patch.exception.JsonPatchException;
+import com.nitin.json.patch.vo.PatchOperation;
+import com.nitin.json.patch.vo.PatchOperationType;
+import com.nitin.json.pointer.JsonPointer;
+import static com.nitin.json.util.LoggerUtils.*;
+
+/*
+ * Applies a patch while streaming the source document from a JsonParser to a JsonGenerator.
+ *
+ * Every operation is mapped to the subtree it can modify or read: the member itself for add,
+ * remove and replace of an object member, the parent array for add, remove and replace of an array
+ * element, the path itself for test, and the common ancestor of the from and path parents for move
+ * and copy. These subtrees are kept in a trie; the shallowest ones are read as trees while
+ * streaming, the operations are applied on them with pointers relative to the subtree, and they
+ * are written back. Everything else is copied token by token.
+ *
+ * A member which is overwritten or removed before anything reads it is skipped in the source
+ * instead of being read. Members which the patch creates, i.e. adds or removes and adds back, are
+ * written at the end of their object, in the order they are created, as the tree engine does.
+ *
+ * Operations of different subtrees cannot affect each other, so applying them in document order
+ * gives the same result as the patch order. Operations which need random access over the whole
+ * document, e.g. a move between two top level members, map to the root, in which case the whole
+ * document is read as a tree, i.e. this falls back to the tree engine.
+ */
+class StreamingPatchEngine {
+
+	private static ObjectMapper mapper = new ObjectMapper();
+	private final PathNode root = new PathNode();
+	private final List<PathNode> subtrees = new ArrayList<PathNode>();
+
+	StreamingPatchEngine(List<PatchOperation> patchOperations) {
+		List<JsonPointer> subtreePtrs = new ArrayList<JsonPointer>(patchOperations.size());
+		for (PatchOperation patchOp : patchOperations) {
+			JsonPointer subtreePtr = getSubtreePointer(patchOp);
+			subtreePtrs.add(subtreePtr);
+			PathNode node = root.insert(subtreePtr, 0);
+			node.materialize = true;
+			node.member |= isMemberWrite(patchOp);
+		}
+		for (int i = 0; i < patchOperations.size(); i++) {
+			PatchOperation patchOp = patchOperations.get(i);
+			JsonPointer subtreePtr = subtreePtrs.get(i);
+			//operations are assigned to the shallowest subtree which contains them
+			PathNode node = root;
+			int depth = 0;
+			while (!node.materialize) {
+				node = node.child(subtreePtr, depth++);
+			}
+			if (node.operations.isEmpty()) {
+				node.pointer = parentAt(subtreePtr, depth);
+				subtrees.add(node);
+			}
+			node.operations.add(rebase(patchOp, depth));
+			node.operationIndexes.add(i);
+		}
+	}
+
+	void apply(JsonParser parser, JsonGenerator generator) throws JsonPatchException {
+		try {
+			if (parser.nextToken() == null)
+				throwJsonPatchException("Source json is empty");
+			writeValue(parser, generator, root);
+			generator.flush();
+		} catch (IOException e) {
+			String errorMsg = "Error occurred while streaming the source json."
+					+ " Corresponding error message is: "+e.getMessage();
+			getLogger().log(Level.SEVERE, errorMsg, e);
+			throw new JsonPatchException(errorMsg, e);
+		}
+		for (PathNode subtree : subtrees) {
+			if (!subtree.visited)
+				throwJsonPatchException("Error occurred while applying patch operation "
+						+ subtree.operations.get(0) + ": location "+ subtree.pointer
+						+ " does not exist in the source json");
+		}
+	}
+
+	/*
+	 * Writes the value at the current token of the parser, patching it if any
+	 * of the operations applies to it.
+	 */
+	private void writeValue(JsonParser parser, JsonGenerator generator, PathNode node)
+			throws IOException, JsonPatchException {
+		if (node == null) {
+			generator.copyCurrentStructure(parser);
+			return;
+		}
+		node.visited = true;
+		if (node.materialize) {
+			JsonNode subtree = mapper.readTree(parser);
+			if (subtree == null)
+				subtree = NullNode.getInstance();
+			for (PatchOperation patchOp : node.operations) {
+				subtree = patchOp.applyInPlace(subtree);
+			}
+			mapper.writeTree(generator, subtree);
+			return;
+		}
+		JsonToken token = parser.getCurrentToken();
+		if (token == JsonToken.START_OBJECT) {
+			//members created by the patch, by the position of the operation which created them
+			TreeMap<Integer, Map.Entry<String, JsonNode>> created = new TreeMap<Integer, Map.Entry<String, JsonNode>>();
+			generator.writeStartObject();
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String fieldName = parser.getCurrentName();
+				parser.nextToken();
+				PathNode child = node.members == null ? null : node.members.get(fieldName);
+				if (child != null && child.member) {
+					writeMember(parser, generator, fieldName, child, created);
+				} else {
+					generator.writeFieldName(fieldName);
+					writeValue(parser, generator, child);
+				}
+			}
+			//members which are not in the source
+			if (node.members != null) {
+				for (Map.Entry<String, PathNode> member : node.members.entrySet()) {
+					if (member.getValue().member && !member.getValue().visited)
+						writeMember(null, generator, member.getKey(), member.getValue(), created);
+				}
+			}
+			for (Map.Entry<String, JsonNode> member : created.values()) {
+				generator.writeFieldName(member.getKey());
+				mapper.writeTree(generator, member.getValue());
+			}
+			generator.writeEndObject();
+		} else if (token == JsonToken.START_ARRAY) {
+			generator.writeStartArray();
+			int idx = 0;
+			while (parser.nextToken() != JsonToken.END_ARRAY) {
+				writeValue(parser, generator, node.elements == null ? null : node.elements.get(idx));
+				idx++;
+			}
+			generator.writeEndArray();
+		} else {
+			generator.copyCurrentEvent(parser);
+		}
+	}
+
+	/*
+	 * Writes an object member which operations add, replace or remove, given the parser positioned
+	 * on its value, or a null parser if the member is not in the source. The source value is only
+	 * read if an operation reads it before the member is overwritten or removed. A member which the
+	 * operations create is added to the created members instead, to be written at the end.
+	 */
+	private void writeMember(JsonParser parser, JsonGenerator generator, String fieldName, PathNode node,
+			Map<Integer, Map.Entry<String, JsonNode>> created) throws IOException, JsonPatchException {
+		node.visited = true;
+		JsonNode value = null;
+		if (parser != null) {
+			if (isOverwrite(node.operations.get(0))) {
+				parser.skipChildren();
+			} else {
+				value = mapper.readTree(parser);
+				if (value == null)
+					value = NullNode.getInstance();
+			}
+		}
+		boolean present = parser != null;
+		int createdAt = -1;
+		for (int i = 0; i < node.operations.size(); i++) {
+			PatchOperation patchOp = node.operations.get(i);
+			if (isOverwrite(patchOp) && patchOp.getOpType() == PatchOperationType.remove) {
+				//the member is removed, which does nothing if it is missing
+				value = null;
+				present = false;
+			} else if (isOverwrite(patchOp)) {
+				if (!present)
+					createdAt = node.operationIndexes.get(i);
+				present = true;
+				value = patchOp.applyInPlace(NullNode.getInstance());
+			} else {
+				if (!present)
+					throwJsonPatchException("Error occurred while applying patch operation "
+							+ patchOp + ": location "+ node.pointer + " does not exist in the source json");
+				value = patchOp.applyInPlace(value);
+			}
+		}
+		if (!present)
+			return;
+		if (createdAt >= 0) {
+			created.put(createdAt, new AbstractMap.SimpleEntry<String, JsonNode>(fieldName, value));
+		} else {
+			generator.writeFieldName(fieldName);
+			mapper.writeTree(generator, value);
+		}
+	}
+
+	/*
+	 * Checks if the operation, relative to its member subtree, sets or removes the whole member.
+	 */
+	private static boolean isOverwrite(PatchOperation patchOp) {
+		return patchOp.getPathPointer().isEmpty() && patchOp.getOpType() != PatchOperationType.test;
+	}
+
+	/*
+	 * Checks if the operation adds, replaces or removes an object member, which does not need
+	 * the other members of the object.
+	 */
+	private static boolean isMemberWrite(PatchOperation patchOp) {
+		JsonPointer pathPtr = patchOp.getPathPointer();
+		switch (patchOp.getOpType()) {
+			case add:
+			case replace:
+			case remove:
+				return !pathPtr.isEmpty() && !pathPtr.isLastTokenArrayIndex()
+						&& !JsonPointer.PATH_HYPHEN.equals(pathPtr.getLastReferenceToken());
+			default:
+				return false;
+		}
+	}
+
+	/*
+	 * Returns the pointer to the subtree which the given operation can read or modify.
+	 */
+	private static JsonPointer getSubtreePointer(PatchOperation patchOp) {
+		JsonPointer pathPtr = patchOp.getPathPointer();
+		switch (patchOp.getOpType()) {
+			case test:
+				return pathPtr;
+			case move:
+			case copy:
+				JsonPointer fromParent = parentOf(patchOp.getFromPointer());
+				JsonPointer pathParent = parentOf(pathPtr);
+				int common = 0;
+				while (common < fromParent.getTokenCount() && common < pathParent.getTokenCount()
+						&& sameToken(fromParent, pathParent, common)) {
+					common++;
+				}
+				return parentAt(pathParent, common);
+			default:
+				return isMemberWrite(patchOp) ? pathPtr : parentOf(pathPtr);
+		}
+	}
+
+	private static JsonPointer parentOf(JsonPointer ptr) {
+		return ptr.getTokenCount() == 0 ? ptr : ptr.parent();
+	}
+
+	private static JsonPointer parentAt(JsonPointer ptr, int tokenCount) {
+		while (ptr.getTokenCount() > tokenCount) {
+			ptr = ptr.parent();
+		}
+		return ptr;
+	}
+
+	private static boolean sameToken(JsonPointer ptr, JsonPointer other, int idx) {
+		return ptr.getArrayIndex(idx) == other.getArrayIndex(idx)
+				&& ptr.getReferenceToken(idx).equals(other.getReferenceToken(idx));
+	}
+
+	/*
+	 * Returns the given operation with its pointers relative to the subtree at the given depth.
+	 */
+	static PatchOperation rebase(PatchOperation patchOp, int depth) {
+		if (depth == 0)
+			return patchOp;
+		String from = patchOp.getFromPointer().getTokenCount() >= depth ?
+				patchOp.getFromPointer().subPointer(depth).toString() : patchOp.getFrom();
+		return new PatchOperation(patchOp.getOpType(),
+				patchOp.getPathPointer().subPointer(depth).toString(), from, patchOp.getValue());
+	}
+
+	private static void throwJsonPatchException(String errorMsg) throws JsonPatchException {
+		getLogger().severe(errorMsg);
+		throw new JsonPatchException(errorMsg);
+	}
+
+	/*
+	 * Trie of the locations which are patched.
+	 */
+	private static class PathNode {
+		Map<String, PathNode> members;
+		Map<Integer, PathNode> elements;
+		boolean materialize;
+		//an object member which is added, replaced or removed, so it may be missing from the source
+		boolean member;
+		boolean visited;
+		JsonPointer pointer;
+		List<PatchOperation> operations = new ArrayList<PatchOperation>();
+		//positions of the operations in the patch
+		List<Integer> operationIndexes = new ArrayList<Integer>();
+
+		PathNode insert(JsonPointer ptr, int depth) {
+			if (depth == ptr.getTokenCount())
+				return this;
+			PathNode next = child(ptr, depth);
+			if (next == null) {
+				next = new PathNode();
+				if (ptr.getArrayIndex(depth) != JsonPointer.NOT_AN_INDEX) {
+					if (elements == null)
+						elements = new HashMap<Integer, PathNode>();
+					elements.put(ptr.getArrayIndex(depth), next);
+				} else {
+					if (members == null)
+						members = new LinkedHashMap<String, PathNode>();
+					members.put(ptr.getReferenceToken(depth), next);
+				}
+			}
+			return next.insert(ptr, depth + 1);
+		}
+
+		PathNode child(JsonPointer ptr, int depth) {
+			if (ptr.getArrayIndex(depth) != JsonPointer.NOT_AN_INDEX)
+				return elements == null ? null : elements.get(ptr.getArrayIndex(depth));
+			return members == null ? null : members.get(ptr.getReferenceToken(depth));
+		}
+	}
+}
@@ -6,13 +6,19 @@ import java.util.logging.Level;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.JsonProcessingException;
 import org.codehaus.jackson.map.ObjectMapper;
-import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.JsonNodeFactory;
+import org.codehaus.jackson.node.MissingNode;
 import org.codehaus.jackson.node.ObjectNode;
 import static com.nitin.json.util.LoggerUtils.*;
+import com.nitin.json.metrics.PatchMetrics;
+import com.nitin.json.node.JacksonNodeAdapter;
+import com.nitin.json.node.JsonNodeAdapter;
+import com.nitin.json.util.MetricsUtils;
 import com.nitin.json.pointer.JsonPointer;
 import com.nitin.json.pointer.exception.JsonPointerException;
 import com.nitin.json.patch.exception.InvalidJsonPatchException;
 import com.nitin.json.patch.exception.JsonPatchException;
+import com.nitin.json.util.JsonNodeUtils;
 import static com.nitin.json.patch.vo.PatchOperationType.*;
 
 /*
@@ -22,6 +28,9 @@ import static com.nitin.json.patch.vo.PatchOperationType.*;
  * Implementation is based on Jackson library
  */
 /**
+ * A patch operation. Instances are immutable, so they can be shared across threads and patches,
+ * provided that the value returned by {@link #getValue()} is not modified.
+ *
  * @author Nitin Patel
  *
  */
@@ -32,35 +41,39 @@ public class PatchOperation {
 	 */
 
 	public PatchOperation(JsonNode operationObj) throws InvalidJsonPatchException {
-		this.opJson = operationObj.toString();
 		//getLogger().fine(operationObj.path(PatchOperationType.Member.OP.getName()));
 		
 		this.op = operationObj.path(PatchOperationType.Member.OP.getName()).asText();
 		this.path = operationObj.path(PatchOperationType.Member.PATH.getName()).asText();
 		this.from = operationObj.path(PatchOperationType.Member.FROM.getName()).asText();
-		this.valueText = operationObj.path(PatchOperationType.Member.VALUE.getName()).asText();
-		this.value = operationObj.path(PatchOperationType.Member.VALUE.getName());
-		//getLogger().fine("Value as text: "+valueText+" & value.toString: "+this.value.toString());
-
-		//this is exception case where the value has escape chars, but valueText doesn't
-		//we would need to parse valueText w/o escape chars back to value
-		if (this.valueText != null && !this.valueText.equals(this.value.toString()) &&
-				this.value.toString().contains("\\")) {
-			try {
-				this.value = mapper.readTree(this.valueText);
-			} catch (IOException e) {
-			    String errorMsg = "Error occurred while trying to execute remove patch operation.";
-	            getLogger().log(Level.SEVERE, errorMsg, e);
-	            throw new InvalidJsonPatchException(
-						"Error occurred while trying to parse value member: "+this.valueText, e);
-			}
-		}
+		this.value = parseValue(operationObj.path(PatchOperationType.Member.VALUE.getName()));
 
-		validateOperationType();
-		this.opType = PatchOperationType.valueOf(this.op);
+		this.opType = PatchOperationType.forName(this.op);
+		if (this.opType == null)
+		    throwInvalidJsonPatchException("Invalid Json Operation "+operationObj+" with op set as: "+this.op);
+		this.pathPtr = JsonPointer.compile(this.path);
+		this.fromPtr = JsonPointer.compile(this.from);
 
 		validateOperationMembers(operationObj);
 	}
+
+	/*
+	 * This is exception case where a text value has escape chars, but its text doesn't:
+	 * we would need to parse the text w/o escape chars back to value.
+	 * Only text values are checked, so other values are never serialized here.
+	 */
+	private static JsonNode parseValue(JsonNode value) throws InvalidJsonPatchException {
+		if (!value.isTextual() || !value.toString().contains("\\"))
+			return value;
+		String valueText = value.getTextValue();
+		try {
+			return mapper.readTree(valueText);
+		} catch (IOException e) {
+		    String errorMsg = "Error occurred while trying to parse value member: "+valueText;
+		    getLogger().log(Level.SEVERE, errorMsg, e);
+		    throw new InvalidJsonPatchException(errorMsg, e);
+		}
+	}
 	
 	private void validateOperationMembers(JsonNode operationObj) throws InvalidJsonPatchException {
 		for (PatchOperationType.Member requiredMember : this.opType.getMembers()) {
@@ -77,46 +90,108 @@ public class PatchOperation {
 	    throw new InvalidJsonPatchException(errorMsg);
     }
 
-    private void validateOperationType() throws InvalidJsonPatchException {
-		if (this.op == null || this.op.isEmpty() || 
-				!PatchOperationType.isValidOperationType(this.op)) {
-		    throwInvalidJsonPatchException("Invalid Json Operation "+this.opJson+" with op set as: "+this.op);
-		}
-	}
-
 	public PatchOperation(String operationJson) throws 
 		JsonProcessingException, IOException, InvalidJsonPatchException {
 		this(new ObjectMapper().readTree(operationJson));
 	}
+
+	/**
+	 * Construct a patch operation from its members, without going through its json representation.
+	 * 
+	 * @param opType - type of the operation.
+	 * @param path - target location of the operation.
+	 * @param from - source location for "move" and "copy", ignored otherwise.
+	 * @param value - value for "add", "replace" and "test", ignored otherwise.
+	 */
+	public PatchOperation(PatchOperationType opType, String path, String from, JsonNode value) {
+		this.opType = opType;
+		this.op = opType.name();
+		this.path = path;
+		this.from = from == null ? "" : from;
+		this.value = value == null ? MissingNode.getInstance() : value;
+		this.pathPtr = JsonPointer.compile(this.path);
+		this.fromPtr = JsonPointer.compile(this.from);
+	}
 	
-	private String op, path, from, valueText;
-	JsonNode value;
-	private PatchOperationType opType;
+	private final String op, path, from;
+	private final JsonNode value;
+	private final PatchOperationType opType;
+	//compiled path and from members, shared by every application of this operation
+	private final JsonPointer pathPtr, fromPtr;
 	private static ObjectMapper mapper = new ObjectMapper();
+	//json text of the operation, built on first use. Racing threads build equal strings, so it needs no lock
 	private String opJson;
 	
 	/**
+	 * Applies this operation on a copy of the given node, the given node is not modified.
+	 * 
 	 * @param sourceNode
 	 * @return
 	 * @throws JsonPatchException
 	 */
 	public JsonNode apply(JsonNode sourceNode) throws JsonPatchException {
-		//operate on clone so that original node is not modified
-		JsonNode result = cloneJsonNode(sourceNode);
-		getLogger().fine("Applying patch operation "+this.opJson+" on node: "+sourceNode);
+		//operate on copy so that original node is not modified
+		return applyInPlace(JsonNodeUtils.deepCopy(sourceNode));
+	}
+
+	/**
+	 * Applies this operation directly on the given node, which is modified by the operation.
+	 * The values added by the operation are copied, so the operation can be applied again.
+	 * 
+	 * @param result - node to be patched.
+	 * @return patched node, which is the given node unless the operation replaced the whole document.
+	 * @throws JsonPatchException - if the operation fails, in which case the given node is left unmodified.
+	 */
+	public JsonNode applyInPlace(JsonNode result) throws JsonPatchException {
+		return applyInPlace(result, JacksonNodeAdapter.INSTANCE);
+	}
+
+	/**
+	 * Applies this operation directly on a node of any tree model, which is modified by the operation.
+	 * 
+	 * @param result - node to be patched.
+	 * @param adapter - adapter of the tree model of the node, e.g. {@link com.nitin.json.node.Jackson2NodeAdapter#INSTANCE}.
+	 * @return patched node, which is the given node unless the operation replaced the whole document.
+	 * @throws JsonPatchException - if the operation fails, in which case the given node is left unmodified.
+	 * @see #applyInPlace(JsonNode)
+	 */
+	public <N> N applyInPlace(N result, JsonNodeAdapter<N> adapter) throws JsonPatchException {
+		getLogger().fine(() -> "Applying patch operation "+this+" on node: "+result);
+		PatchMetrics metrics = MetricsUtils.getMetrics();
+		if (metrics == null)
+			return execute(result, adapter);
+		long start = System.nanoTime();
+		try {
+			N patched = execute(result, adapter);
+			metrics.operationApplied(this.opType, System.nanoTime() - start);
+			return patched;
+		} catch (JsonPatchException e) {
+			metrics.operationFailed(this.opType, System.nanoTime() - start);
+			throw e;
+		}
+	}
+
+	/*
+	 * The resulting json is only serialized when fine logging is enabled.
+	 */
+	private static void logOutcome(String operation, Object result) {
+		getLogger().fine(() -> operation+" operation successful. Resulting JSON:\n"+result);
+	}
+
+	private <N> N execute(N result, JsonNodeAdapter<N> adapter) throws JsonPatchException {
 		switch(this.opType){
 			case add:
-				return executeAddOperation(result);
+				return executeAddOperation(result, adapter);
 			case replace:
-				return executeReplaceOperation(result);
+				return executeReplaceOperation(result, adapter);
 			case remove:
-				return executeRemoveOperation(result);
+				return executeRemoveOperation(result, adapter);
 			case move:
-				return executeMoveOperation(result);
+				return executeMoveOperation(result, adapter);
 			case copy:
-				return executeCopyOperation(result);
+				return executeCopyOperation(result, adapter);
 			case test:
-				return executeTestOperation(result);
+				return executeTestOperation(result, adapter);
 		}
 		return result;
 	}
@@ -135,16 +210,16 @@ public class PatchOperation {
    o  If the target location specifies an object member that does exist,
       that member's value is replaced.
 	 */
-	private JsonNode executeAddOperation(JsonNode result) throws JsonPatchException {
+	private <N> N executeAddOperation(N result, JsonNodeAdapter<N> adapter) throws JsonPatchException {
 		try {
-			getLogger().fine("Adding "+this.value+" at "+this.path);
-			JsonNode nodeToBeAdded = this.value;
+			getLogger().fine(() -> "Adding "+this.value+" at "+this.path);
+			N nodeToBeAdded = adapter.fromJackson(this.value);
 			
-			add(result, new JsonPointer(this.path), nodeToBeAdded);
+			result = add(result, this.pathPtr, nodeToBeAdded, adapter);
 		} catch (JsonPointerException e) {
-		    throwJsonPatchException("Error occurred while trying to execute add patch operation: "+this.opJson, e);
+		    throwJsonPatchException("Error occurred while trying to execute add patch operation: "+this, e);
 		}
-		getLogger().fine("Add operation successful. Resulting JSON:\n"+result);
+		logOutcome("Add", result);
 		return result;
 	}
 
@@ -163,14 +238,13 @@ public class PatchOperation {
    a value, followed immediately by an "add" operation at the same
    location with the replacement value.
 	 */
-	private JsonNode executeReplaceOperation(JsonNode result) throws JsonPatchException {
-		JsonPointer jsonPtr = new JsonPointer(getPath());
+	private <N> N executeReplaceOperation(N result, JsonNodeAdapter<N> adapter) throws JsonPatchException {
 		try {
-			result = jsonPtr.replace(result, this.value);
-		} catch (JsonPointerException | IOException e) {
-		    throwJsonPatchException("Error occurred while trying to execute replace patch operation: "+this.opJson, e);
+			result = replace(result, this.pathPtr, adapter.fromJackson(this.value), adapter);
+		} catch (JsonPointerException e) {
+		    throwJsonPatchException("Error occurred while trying to execute replace patch operation: "+this, e);
 		}
-		getLogger().fine("Replace operation successful. Resulting JSON:\n"+result);
+		logOutcome("Replace", result);
 		return result;
 	}
 
@@ -186,16 +260,14 @@ public class PatchOperation {
    If removing an element from an array, any elements above the
    specified index are shifted one position to the left.
 	 */
-	private JsonNode executeRemoveOperation(JsonNode result) throws JsonPatchException {
+	private <N> N executeRemoveOperation(N result, JsonNodeAdapter<N> adapter) throws JsonPatchException {
 		try {
-			//get the node to be removed represented by path member
-			JsonPointer ptrToBeRemoved = new JsonPointer(this.path);
-			
-			result = remove(result, ptrToBeRemoved);
+			//remove the node represented by path member
+			result = remove(result, this.pathPtr, adapter);
 		} catch (JsonPointerException e) {
 		    throwJsonPatchException("Error occurred while trying to execute remove patch operation.", e);
 		}
-		getLogger().fine("Remove operation successful. Resulting JSON:\n"+result);
+		logOutcome("Remove", result);
 		return result;
 	}
 
@@ -204,27 +276,60 @@ public class PatchOperation {
         throw new JsonPatchException(errorMsg, e);
     }
 
-  private JsonNode remove(JsonNode result, JsonPointer ptrToBeRemoved) throws JsonPointerException {
-		JsonNode parentNode = ptrToBeRemoved.getParentNode(result);
+  private <N> N remove(N result, JsonPointer ptrToBeRemoved, JsonNodeAdapter<N> adapter) throws JsonPointerException {
+		N parentNode = ptrToBeRemoved.getParentNode(result, adapter);
 		
-		String lastReferenceToken = ptrToBeRemoved.getJsonPtr().
-				substring(ptrToBeRemoved.getJsonPtr().lastIndexOf(JsonPointer.FORWARD_SLASH)+1);
-		if(lastReferenceToken.matches(JsonPointer.REGEX_NUMERIC_VALUE)) {
-			int idx = Integer.parseInt(lastReferenceToken);
-			ArrayNode parentArray = (ArrayNode)parentNode;
-			if (idx > parentArray.size()-1) {
-	            throwJsonPointerException(idx, parentArray);
+		if(ptrToBeRemoved.isLastTokenArrayIndex()) {
+			int idx = ptrToBeRemoved.getLastArrayIndex();
+			N parentArray = asArrayNode(parentNode, ptrToBeRemoved, adapter);
+			if (idx > adapter.size(parentArray)-1) {
+	            throwJsonPointerException(idx, parentArray, adapter);
 			}
-			parentArray.remove(idx);
+			adapter.removeElement(parentArray, idx);
 		} else {
-			((ObjectNode)parentNode).remove(lastReferenceToken);
+			adapter.removeMember(asObjectNode(parentNode, ptrToBeRemoved, adapter), ptrToBeRemoved.getLastReferenceToken());
 		}
 		return result;
 	}
 
-    private void throwJsonPointerException(int idx, ArrayNode parentArray) throws JsonPointerException {
+	private <N> N replace(N result, JsonPointer targetPtr, N newValue, JsonNodeAdapter<N> adapter) throws JsonPointerException {
+		if (targetPtr.isEmpty())
+			return newValue;
+		N parentNode = targetPtr.getParentNode(result, adapter);
+		
+		if(targetPtr.isLastTokenArrayIndex()) {
+			int idx = targetPtr.getLastArrayIndex();
+			N parentArray = asArrayNode(parentNode, targetPtr, adapter);
+			if (idx > adapter.size(parentArray)-1) {
+				throwJsonPointerException(idx, parentArray, adapter);
+			}
+			adapter.setElement(parentArray, idx, newValue);
+		} else {
+			adapter.putMember(asObjectNode(parentNode, targetPtr, adapter), targetPtr.getLastReferenceToken(), newValue);
+		}
+		return result;
+	}
+
+	private <N> N asArrayNode(N parentNode, JsonPointer ptr, JsonNodeAdapter<N> adapter) throws JsonPointerException {
+		if (!adapter.isArray(parentNode))
+			throwJsonPointerException("Invalid Json Pointer: "+ptr+" refers to an array index, but the parent is not an array");
+		return parentNode;
+	}
+
+	private <N> N asObjectNode(N parentNode, JsonPointer ptr, JsonNodeAdapter<N> adapter) throws JsonPointerException {
+		if (!adapter.isObject(parentNode))
+			throwJsonPointerException("Invalid Json Pointer: "+ptr+" refers to an object member, but the parent is not an object");
+		return parentNode;
+	}
+
+	private void throwJsonPointerException(String errorMsg) throws JsonPointerException {
+		getLogger().log(Level.SEVERE, errorMsg);
+		throw new JsonPointerException(errorMsg);
+	}
+
+    private <N> void throwJsonPointerException(int idx, N parentArray, JsonNodeAdapter<N> adapter) throws JsonPointerException {
         String errorMsg = "Invalid Json Pointer: Index "+idx+
-            " is not valid, given the parent Array "+parentArray+" with size: "+parentArray.size();
+            " is not valid, given the parent Array "+parentArray+" with size: "+adapter.size(parentArray);
         getLogger().log(Level.SEVERE, errorMsg);
         throw new JsonPointerException(errorMsg);
     }
@@ -234,22 +339,26 @@ public class PatchOperation {
 	 * the "from" location, followed immediately by an "add" operation at
 	 * the target location with the value that was just removed.
 	 */
-	private JsonNode executeMoveOperation(JsonNode result) throws JsonPatchException {
+	private <N> N executeMoveOperation(N result, JsonNodeAdapter<N> adapter) throws JsonPatchException {
 		try {
 			//get the object/value represented by from member
-			JsonPointer ptrToBeMoved = new JsonPointer(this.from);
-			JsonNode nodeToBeMoved = ptrToBeMoved.getValue(result);
+			N nodeToBeMoved = this.fromPtr.getValue(result, adapter);
 			
-			//remove the object/value represented by ptrToBeMoved
-			result = remove(result, ptrToBeMoved);
+			//remove the object/value represented by from member
+			result = remove(result, this.fromPtr, adapter);
 			
 			//Add from value at the target location represented by path member
-			JsonPointer targetPtr = new JsonPointer(this.path);
-			result = add(result, targetPtr, nodeToBeMoved);
+			try {
+				result = add(result, this.pathPtr, nodeToBeMoved, adapter);
+			} catch (JsonPointerException e) {
+				//put the moved node back so that the failed operation leaves the node unmodified
+				add(result, this.fromPtr, nodeToBeMoved, adapter);
+				throw e;
+			}
 		} catch (JsonPointerException e) {
-		    throwJsonPatchException("Error occurred while trying to execute move patch operation: "+this.opJson, e);
+		    throwJsonPatchException("Error occurred while trying to execute move patch operation: "+this, e);
         }
-		getLogger().fine("Move operation successful. Resulting JSON:\n"+result);
+		logOutcome("Move", result);
 		return result;
 	}
 
@@ -257,42 +366,41 @@ public class PatchOperation {
 	 * This operation is functionally identical to an "add" operation at the
 	 * target location using the value specified in the "from" member.
 	 */
-	private JsonNode executeCopyOperation(JsonNode result) throws JsonPatchException {
+	private <N> N executeCopyOperation(N result, JsonNodeAdapter<N> adapter) throws JsonPatchException {
 		try {
 			//get the object/value the from member
-			JsonPointer fromPtr = new JsonPointer(this.from);
-			JsonNode nodeToBeAdded = fromPtr.getValue(result);
+			N nodeToBeAdded = adapter.deepCopy(this.fromPtr.getValue(result, adapter));
 			
 			//Add from value at the target location represented by path member
-			JsonPointer targetPtr = new JsonPointer(this.path);
-			result = add(result, targetPtr, nodeToBeAdded);
+			result = add(result, this.pathPtr, nodeToBeAdded, adapter);
 		} catch (JsonPointerException e) {
-		    throwJsonPatchException("Error occurred while trying to execute copy patch operation: "+this.opJson, e);
+		    throwJsonPatchException("Error occurred while trying to execute copy patch operation: "+this, e);
 		}
-		getLogger().fine("Copy operation successful. Resulting JSON:\n"+result);
+		logOutcome("Copy", result);
 		return result;
 	}
 
-	private JsonNode add(JsonNode result, JsonPointer targetPtr, JsonNode nodeToBeAdded) throws JsonPointerException {
-		JsonNode parentNode = targetPtr.getParentNode(result);
+	private <N> N add(N result, JsonPointer targetPtr, N nodeToBeAdded, JsonNodeAdapter<N> adapter) throws JsonPointerException {
+		if (targetPtr.isEmpty())
+			return nodeToBeAdded;
+		N parentNode = targetPtr.getParentNode(result, adapter);
 		
-		String lastReferenceToken = targetPtr.getJsonPtr().
-				substring(targetPtr.getJsonPtr().lastIndexOf(JsonPointer.FORWARD_SLASH)+1);
-		if(lastReferenceToken.matches(JsonPointer.REGEX_NUMERIC_VALUE)) {
+		String lastReferenceToken = targetPtr.getLastReferenceToken();
+		if(targetPtr.isLastTokenArrayIndex()) {
 			//check if given index is valid, should be <= size of parent array
-			int idx = Integer.parseInt(lastReferenceToken);
-			ArrayNode parentArray = (ArrayNode)parentNode;
-			if (idx > parentArray.size()) {
-	             throwJsonPointerException(idx, parentArray);
+			int idx = targetPtr.getLastArrayIndex();
+			N parentArray = asArrayNode(parentNode, targetPtr, adapter);
+			if (idx > adapter.size(parentArray)) {
+	             throwJsonPointerException(idx, parentArray, adapter);
 			}
 			//insert node at specified index, which ensures that:
 			//Any elements at or above the index are shifted one position to the right
-			parentArray.insert(idx, nodeToBeAdded);
+			adapter.insertElement(parentArray, idx, nodeToBeAdded);
 		} else if (JsonPointer.PATH_HYPHEN.equals(lastReferenceToken)) {
 			//if "-" is used as the index, then add it to the end of the array
-			((ArrayNode)parentNode).add(nodeToBeAdded);
+			adapter.addElement(asArrayNode(parentNode, targetPtr, adapter), nodeToBeAdded);
 		} else {
-			((ObjectNode)parentNode).put(lastReferenceToken, nodeToBeAdded);
+			adapter.putMember(asObjectNode(parentNode, targetPtr, adapter), lastReferenceToken, nodeToBeAdded);
 		}
 		return result;
 	}
@@ -301,18 +409,18 @@ public class PatchOperation {
 	 * The "test" operation tests that a value at the target location is
 	 * equal to a specified value.
 	 */
-	private JsonNode executeTestOperation(JsonNode result) throws JsonPatchException {
+	private <N> N executeTestOperation(N result, JsonNodeAdapter<N> adapter) throws JsonPatchException {
 		try {
 			//get the value at target location represented by path
-			JsonNode targetNode = new JsonPointer(this.path).getValue(result);
-			getLogger().fine("Testing "+targetNode+" against "+this.value);
-			if (!targetNode.equals(this.value))
-                throwJsonPatchException("\"test\" patch operation "+this.opJson
+			N targetNode = this.pathPtr.getValue(result, adapter);
+			getLogger().fine(() -> "Testing "+targetNode+" against "+this.value);
+			if (!adapter.matches(targetNode, this.value))
+                throwJsonPatchException("\"test\" patch operation "+this
                     + " failed as the target location is not equal to the specified value.");
 			else
 			    getLogger().fine("Test operation successful!");
 		} catch (JsonPointerException e) {
-		    throwJsonPatchException("Error occurred while applying \"test\" patch operation: "+this.opJson, e);
+		    throwJsonPatchException("Error occurred while applying \"test\" patch operation: "+this, e);
 		}
 		return result;
 	}
@@ -322,56 +430,62 @@ public class PatchOperation {
         throw new JsonPatchException(errorMsg);
     }
 
-	/*
-	 * Creates a deep copy of the given jsonnode.
-	 * This is required before performing any patch operation on source. 
+	/**
+	 * @return json representation of this operation, with only the members required by its type.
 	 */
-	private JsonNode cloneJsonNode(JsonNode node) throws JsonPatchException {
-		JsonNode clone = null;
-		try {
-			clone = mapper.readTree(node.toString());
-		} catch (IOException e) {
-		    throwJsonPatchException("Failed clone the source JSON "
-					+ "while trying to apply patch operation: "+this.opJson, e);
-		}
-		return clone;
+	public ObjectNode toJsonNode() {
+		ObjectNode operationObj = JsonNodeFactory.instance.objectNode();
+		operationObj.put(PatchOperationType.Member.OP.getName(), this.op);
+		if (this.opType.getMembers().contains(PatchOperationType.Member.FROM))
+			operationObj.put(PatchOperationType.Member.FROM.getName(), this.from);
+		operationObj.put(PatchOperationType.Member.PATH.getName(), this.path);
+		if (this.opType.getMembers().contains(PatchOperationType.Member.VALUE))
+			operationObj.put(PatchOperationType.Member.VALUE.getName(), this.value);
+		return operationObj;
 	}
 
-	public PatchOperationType getOpType() {
-		return opType;
+	@Override
+	public String toString() {
+		if (this.opJson == null)
+			this.opJson = toJsonNode().toString();
+		return this.opJson;
 	}
 
-	public void setOpType(PatchOperationType opType) {
-		this.opType = opType;
+	public PatchOperationType getOpType() {
+		return opType;
 	}
 
 	public String getOp() {
 		return op;
 	}
 
-	public void setOp(String op) {
-		this.op = op;
-	}
-
 	public String getPath() {
 		return path;
 	}
 
-	public void setPath(String path) {
-		this.path = path;
+	/**
+	 * @return value member of the operation, which must not be modified.
+	 */
+	public JsonNode getValue() {
+		return value;
 	}
 
-	public void setValue(JsonNode value) {
-		this.value = value;
+	/**
+	 * @return compiled pointer of the path member.
+	 */
+	public JsonPointer getPathPointer() {
+		return pathPtr;
+	}
+
+	/**
+	 * @return compiled pointer of the from member.
+	 */
+	public JsonPointer getFromPointer() {
+		return fromPtr;
 	}
 
 	public String getFrom() {
 		return from;
 	}
 
-	public void setFrom(String from) {
-		this.from = from;
-	}
-	
-	
 }
@@ -1,7 +1,9 @@
 package com.nitin.json.patch.vo;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public enum PatchOperationType {
 	add(Arrays.asList(new Member[] {Member.OP, Member.PATH, Member.VALUE})), 
@@ -11,6 +13,12 @@ public enum PatchOperationType {
 	copy(Arrays.asList(new Member[] {Member.OP, Member.PATH, Member.FROM})), 
 	test(Arrays.asList(new Member[] {Member.OP, Member.PATH, Member.VALUE}));
 	
+	private static final Map<String, PatchOperationType> BY_NAME = new HashMap<String, PatchOperationType>();
+	static {
+		for (PatchOperationType opType : values()) {
+			BY_NAME.put(opType.name(), opType);
+		}
+	}
 	private List<Member> requiredMembers;
 
 	public List<Member> getMembers() {
@@ -22,11 +30,15 @@ public enum PatchOperationType {
 	}
 	
 	public static boolean isValidOperationType(String op) {
-		for (PatchOperationType opType : PatchOperationType.values()) {
-			if (op != null && opType.toString().equals(op))
-				return true;
-		}
-		return false;
+		return forName(op) != null;
+	}
+
+	/**
+	 * @param op - value of the "op" member of an operation.
+	 * @return type of the operation, or null if op is not a valid operation type.
+	 */
+	public static PatchOperationType forName(String op) {
+		return op == null ? null : BY_NAME.get(op);
 	}
 	
 	public enum Member{
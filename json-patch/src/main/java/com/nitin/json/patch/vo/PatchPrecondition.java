@@ -0,0 +1,40 @@
+package com.nitin.json.patch.vo;
+
+/**
+ * Fact about a document which a patch operation checks, e.g. that its path exists. When patches
+ * are composed, the operations which are folded away no longer check their facts, so the composed
+ * patch may succeed on a document on which the original patches fail. The facts hold for the
+ * document the operation was applied on in the original patches, i.e. the base document
+ * after the operations before it.
+ *
+ * @author Nitin Patel
+ */
+public class PatchPrecondition {
+
+	private final PatchOperation operation;
+	private final String description;
+
+	public PatchPrecondition(PatchOperation operation, String description) {
+		this.operation = operation;
+		this.description = description;
+	}
+
+	/**
+	 * @return operation which checked the fact.
+	 */
+	public PatchOperation getOperation() {
+		return operation;
+	}
+
+	/**
+	 * @return the fact, e.g. "/a/b exists".
+	 */
+	public String getDescription() {
+		return description;
+	}
+
+	@Override
+	public String toString() {
+		return description+", checked by "+operation;
+	}
+}
@@ -0,0 +1,53 @@
+package com.nitin.json.patch.vo;
+
+import org.codehaus.jackson.JsonNode;
+
+import com.nitin.json.patch.exception.JsonPatchException;
+
+/**
+ * Outcome of applying a patch on one document of a batch: either the patched document,
+ * or the failure which prevented the patch from being applied.
+ *
+ * @author Nitin Patel
+ */
+public class PatchResult {
+
+	private final JsonNode result;
+	private final JsonPatchException failure;
+
+	public PatchResult(JsonNode result) {
+		this.result = result;
+		this.failure = null;
+	}
+
+	public PatchResult(JsonPatchException failure) {
+		this.result = null;
+		this.failure = failure;
+	}
+
+	/**
+	 * @return true if the patch was applied.
+	 */
+	public boolean isSuccess() {
+		return failure == null;
+	}
+
+	/**
+	 * @return patched document, or null if the patch failed.
+	 */
+	public JsonNode getResult() {
+		return result;
+	}
+
+	/**
+	 * @return failure of the patch, or null if the patch was applied.
+	 */
+	public JsonPatchException getFailure() {
+		return failure;
+	}
+
+	@Override
+	public String toString() {
+		return isSuccess() ? String.valueOf(result) : "failure: "+failure.getMessage();
+	}
+}
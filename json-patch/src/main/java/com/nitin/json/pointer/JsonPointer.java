@@ -1,22 +1,33 @@
 package com.nitin.json.pointer;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import static com.nitin.json.util.LoggerUtils.*;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.JsonProcessingException;
-import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.node.ObjectNode;
 import org.codehaus.jackson.node.ArrayNode;
+import com.nitin.json.node.JacksonNodeAdapter;
+import com.nitin.json.node.JsonNodeAdapter;
 import com.nitin.json.pointer.exception.JsonPointerException;
+import com.nitin.json.util.JsonNodeUtils;
 
 /**
  * @author Nitin Patel
- * 
+ *
  * This class is an implementation of "JavaScript Object Notation (JSON) Pointer" RFC 6901:
  * https://tools.ietf.org/html/rfc6901
- * 
+ *
  * The implementation is based on jackson library, and takes jackson's org.codehaus.jackson.JsonNode
  * as input and output.
+ *
+ * The pointer is compiled once when it is constructed: the reference tokens are decoded and each of
+ * them is classified as either an array index or an object member name. Evaluation walks these
+ * pre-computed tokens, so no parsing happens while a pointer is evaluated. Instances are immutable
+ * and can be shared across threads; use {@link #compile(String)} to reuse the instances of pointers
+ * which are evaluated repeatedly.
  */
 public class JsonPointer {
 
@@ -26,59 +37,172 @@ public class JsonPointer {
 	private static final String ENCODED_CHAR_FORWARD_SLASH = "~1";
 	public static final String FORWARD_SLASH = "/";
 	public static final String PATH_HYPHEN = "-";
+	/**
+	 * Array index of the reference tokens which are object member names.
+	 */
+	public static final int NOT_AN_INDEX = -1;
+	private static final int MAX_COMPILED_POINTERS = 10000;
+	private static final ConcurrentMap<String, JsonPointer> compiledPointers =
+			new ConcurrentHashMap<String, JsonPointer>();
+	private static final String[] NO_TOKENS = new String[0];
+	private static final int[] NO_INDEXES = new int[0];
+
 	private final String jsonPtr;
-	
+	//decoded reference tokens, null if the pointer itself is null
+	private final String[] referenceTokens;
+	//array index represented by each reference token, or NOT_AN_INDEX for member names
+	private final int[] arrayIndexes;
+	private JsonPointer parent;
+
 	public String getJsonPtr() {
 		return jsonPtr;
 	}
 
-	public static final JsonPointer EMPTY = new JsonPointer(""); 
+	public static final JsonPointer EMPTY = new JsonPointer("");
 
 	/**
-	 * Construct a JsonPointer using the pointer represented as a string. 
+	 * Construct a JsonPointer using the pointer represented as a string.
 	 * @param pointer
 	 */
 	public JsonPointer(String pointer) {
 		this.jsonPtr = pointer;
+		if (pointer == null) {
+			this.referenceTokens = null;
+			this.arrayIndexes = null;
+		} else if (pointer.isEmpty()) {
+			this.referenceTokens = NO_TOKENS;
+			this.arrayIndexes = NO_INDEXES;
+		} else {
+			String[] rawTokens = splitReferenceTokens(pointer);
+			this.referenceTokens = new String[rawTokens.length];
+			this.arrayIndexes = new int[rawTokens.length];
+			for (int i = 0; i < rawTokens.length; i++) {
+				this.arrayIndexes[i] = toArrayIndex(rawTokens[i]);
+				this.referenceTokens[i] = decodeEscapedCharSeqs(rawTokens[i]);
+			}
+		}
 	}
-	
+
+	private JsonPointer(String pointer, String[] referenceTokens, int[] arrayIndexes) {
+		this.jsonPtr = pointer;
+		this.referenceTokens = referenceTokens;
+		this.arrayIndexes = arrayIndexes;
+	}
+
+	/**
+	 * Returns the compiled JsonPointer for the given pointer string. Pointers are interned, so
+	 * repeated calls with the same pointer return the same instance without parsing it again.
+	 *
+	 * @param pointer - Json pointer represented as a string.
+	 * @return compiled JsonPointer
+	 */
+	public static JsonPointer compile(String pointer) {
+		if (pointer == null)
+			return new JsonPointer(null);
+		JsonPointer compiled = compiledPointers.get(pointer);
+		if (compiled == null) {
+			compiled = new JsonPointer(pointer);
+			if (compiledPointers.size() < MAX_COMPILED_POINTERS) {
+				JsonPointer existing = compiledPointers.putIfAbsent(pointer, compiled);
+				if (existing != null)
+					compiled = existing;
+			}
+		}
+		return compiled;
+	}
+
+	/*
+	 * Splits the pointer into raw reference tokens. The first character is the
+	 * separator of the first token.
+	 */
+	private static String[] splitReferenceTokens(String pointer) {
+		int count = 1;
+		for (int i = 1; i < pointer.length(); i++) {
+			if (pointer.charAt(i) == '/')
+				count++;
+		}
+		String[] tokens = new String[count];
+		int start = 1, tokenIdx = 0;
+		for (int i = 1; i < pointer.length(); i++) {
+			if (pointer.charAt(i) == '/') {
+				tokens[tokenIdx++] = pointer.substring(start, i);
+				start = i + 1;
+			}
+		}
+		tokens[tokenIdx] = start < pointer.length() ? pointer.substring(start) : "";
+		return tokens;
+	}
+
+	/*
+	 * Returns the array index represented by the given raw token, if the token is numeric.
+	 * Indexes which do not fit in an int are clamped so that they never resolve.
+	 */
+	private static int toArrayIndex(String rawToken) {
+		if (rawToken.isEmpty())
+			return NOT_AN_INDEX;
+		long idx = 0;
+		for (int i = 0; i < rawToken.length(); i++) {
+			char c = rawToken.charAt(i);
+			if (c < '0' || c > '9')
+				return NOT_AN_INDEX;
+			if (idx < Integer.MAX_VALUE)
+				idx = idx * 10 + (c - '0');
+		}
+		return (int)Math.min(idx, Integer.MAX_VALUE);
+	}
+
 	/**
 	 * Evaluates the current jsonPointer against the Json document which is provided as an input,
 	 * and returns the Json which refers to the current pointer.
-	 * 
+	 *
 	 * Usage:
 	 * JsonPointer jsonPointer = new JsonPointer("/foo/0");
 	 * JsonNode node = jsonPointer.getValue(inputJson));//say inputJson represents {"foo": ["bar", "baz"]}
-	 * 
+	 *
 	 * Note: With {"foo": ["bar", "baz"]} as input Json document, and "/foo/0" as json pointer,
 	 * this method would return "bar" as the output.
-	 * 
+	 *
 	 * @param node - Represents the Json document against which the json pointer needs to be evaluated.
 	 * @return Json which refers to the current json pointer.
 	 * @throws JsonPointerException - If the json pointer is invalid or if the evaluation fails on the
-	 * json document provided as input. 
+	 * json document provided as input.
 	 */
-	public JsonNode getValue(JsonNode node) 
+	public JsonNode getValue(JsonNode node)
+			throws JsonPointerException {
+		return getValue(node, JacksonNodeAdapter.INSTANCE);
+	}
+
+	/**
+	 * Evaluates the current jsonPointer against a Json document of any tree model.
+	 *
+	 * @param node - Json document against which the json pointer needs to be evaluated.
+	 * @param adapter - adapter of the tree model of the document, e.g. {@link com.nitin.json.node.Jackson2NodeAdapter#INSTANCE}.
+	 * @return node of the document which refers to the current json pointer.
+	 * @throws JsonPointerException - If the json pointer is invalid or if the evaluation fails.
+	 * @see #getValue(JsonNode)
+	 */
+	public <N> N getValue(N node, JsonNodeAdapter<N> adapter)
 			throws JsonPointerException {
 		validate(node);
-		
-		if (EMPTY.equals(this))
-			return node;
-		
-		JsonNode currentNode = node; 
-		for (String ptrRef : getJsonPtr().substring(1).split(FORWARD_SLASH)) {
-			if(ptrRef.matches(REGEX_NUMERIC_VALUE)) {
-  			    //handle array
-  			    if (!(currentNode instanceof ArrayNode))
-  			        throwJsonPointerException(node);
-  			  
-  			    currentNode = ((ArrayNode)currentNode).get(Integer.parseInt(ptrRef));
+		return resolve(node, referenceTokens.length, adapter);
+	}
+
+	/*
+	 * Walks the first tokenCount reference tokens starting at the given node.
+	 */
+	private <N> N resolve(N node, int tokenCount, JsonNodeAdapter<N> adapter) throws JsonPointerException {
+		N currentNode = node;
+		for (int i = 0; i < tokenCount; i++) {
+			if (arrayIndexes[i] != NOT_AN_INDEX) {
+				//handle array
+				if (!adapter.isArray(currentNode))
+					throwJsonPointerException(node);
+				currentNode = adapter.getElement(currentNode, arrayIndexes[i]);
 			} else {
 				//handle object
-				ptrRef = decodeEscapedCharSeqs(ptrRef);
-				if (!(currentNode instanceof ObjectNode))
-                    throwJsonPointerException(node);
-				currentNode = ((ObjectNode)currentNode).get(ptrRef);
+				if (!adapter.isObject(currentNode))
+					throwJsonPointerException(node);
+				currentNode = adapter.getMember(currentNode, referenceTokens[i]);
 			}
 			if (currentNode == null) {
 				throwJsonPointerException(node);
@@ -87,22 +211,22 @@ public class JsonPointer {
 		return currentNode;
 	}
 
-  private void throwJsonPointerException(JsonNode node) throws JsonPointerException {
+  private void throwJsonPointerException(Object node) throws JsonPointerException {
     String errorMsg = "Invalid Json pointer "+getJsonPtr()+" for given JSON "+node;
     getLogger().severe(errorMsg);
     throw new JsonPointerException(errorMsg);
   }
 
-	private void validate(JsonNode node) throws JsonPointerException {
+	private void validate(Object node) throws JsonPointerException {
 		if (getJsonPtr() == null) {
 			throwJsonPointerException(node);
 		}
 	}
-	
+
 	/**
 	 * Replaces the json node represented by the current json pointer with
-	 * new json node in the given node.
-	 * 
+	 * new json node in a copy of the given node. The given node is not modified.
+	 *
 	 * @param rootNode
 	 * @param newValue
 	 * @return
@@ -110,51 +234,176 @@ public class JsonPointer {
 	 * @throws JsonProcessingException
 	 * @throws IOException
 	 */
-	public JsonNode replace(JsonNode rootNode, JsonNode newValue) 
+	public JsonNode replace(JsonNode rootNode, JsonNode newValue)
 			throws JsonPointerException, JsonProcessingException, IOException {
 		validate(rootNode);
-		if (EMPTY.equals(this)) {
+		if (isEmpty()) {
 			return newValue;
 		}
-		
-		rootNode = cloneJsonNode(rootNode);
-		
-		JsonNode parentNode = parent().getValue(rootNode);
-		
-		String lastReferenceToken = getJsonPtr().substring(getJsonPtr().lastIndexOf(FORWARD_SLASH)+1);
-		if(lastReferenceToken.matches(REGEX_NUMERIC_VALUE)) {
-			((ArrayNode)parentNode).set(Integer.parseInt(lastReferenceToken), newValue);
+
+		rootNode = JsonNodeUtils.deepCopy(rootNode);
+
+		JsonNode parentNode = getParentNode(rootNode);
+
+		if(isLastTokenArrayIndex()) {
+			((ArrayNode)parentNode).set(getLastArrayIndex(), newValue);
 		} else {
-			((ObjectNode)parentNode).put(lastReferenceToken, newValue);
+			((ObjectNode)parentNode).put(getLastReferenceToken(), newValue);
 		}
 		return rootNode;
 	}
 
-	private JsonNode cloneJsonNode(JsonNode node) throws JsonProcessingException, IOException {
-		return new ObjectMapper().readTree(node.toString());
-	}
-
+	/**
+	 * Returns the pointer to the parent of the location referred by this pointer.
+	 * The parent is computed from the compiled tokens and cached.
+	 */
 	public JsonPointer parent() {
-		return new JsonPointer(getJsonPtr().substring(0,
-				getJsonPtr().lastIndexOf(FORWARD_SLASH)));
+		JsonPointer parentPtr = parent;
+		if (parentPtr == null) {
+			if (referenceTokens == null || referenceTokens.length == 0)
+				throw new IllegalStateException("Json pointer \""+getJsonPtr()+"\" has no parent");
+			int parentLength = referenceTokens.length - 1;
+			parentPtr = parentLength == 0 ? EMPTY : new JsonPointer(
+					getJsonPtr().substring(0, getJsonPtr().lastIndexOf(FORWARD_SLASH)),
+					Arrays.copyOf(referenceTokens, parentLength),
+					Arrays.copyOf(arrayIndexes, parentLength));
+			parent = parentPtr;
+		}
+		return parentPtr;
 	}
-	
+
 	public JsonNode getParentNode(JsonNode node) throws JsonPointerException {
-		JsonNode parentNode = parent().getValue(node);
-		if (parentNode == null) {
-		    String errorMsg = "Invalid Json pointer - Parent node not found: "+parent();
-		    getLogger().severe(errorMsg);
+		return getParentNode(node, JacksonNodeAdapter.INSTANCE);
+	}
+
+	/**
+	 * Returns the parent of the node referred by this pointer, in a document of any tree model.
+	 *
+	 * @param node - Json document against which the json pointer needs to be evaluated.
+	 * @param adapter - adapter of the tree model of the document.
+	 * @return parent node.
+	 * @throws JsonPointerException - If this pointer refers to the root, or if the evaluation fails.
+	 */
+	public <N> N getParentNode(N node, JsonNodeAdapter<N> adapter) throws JsonPointerException {
+		validate(node);
+		if (isEmpty()) {
+			String errorMsg = "Invalid Json pointer - Root of the document has no parent node";
+			getLogger().severe(errorMsg);
 			throw new JsonPointerException(errorMsg);
 		}
-		return parentNode;
+		//walk all but the last token, which avoids materializing the parent pointer
+		return resolve(node, referenceTokens.length - 1, adapter);
+	}
+
+	/**
+	 * @return true if this pointer refers to the whole document.
+	 */
+	public boolean isEmpty() {
+		return referenceTokens != null && referenceTokens.length == 0;
+	}
+
+	/**
+	 * @return number of reference tokens in this pointer.
+	 */
+	public int getTokenCount() {
+		return referenceTokens == null ? 0 : referenceTokens.length;
+	}
+
+	/**
+	 * @param idx - position of the reference token in this pointer.
+	 * @return decoded reference token at the given position.
+	 */
+	public String getReferenceToken(int idx) {
+		return referenceTokens[idx];
+	}
+
+	/**
+	 * @param idx - position of the reference token in this pointer.
+	 * @return array index represented by the reference token, or {@link #NOT_AN_INDEX}
+	 * if the token is an object member name.
+	 */
+	public int getArrayIndex(int idx) {
+		return arrayIndexes[idx];
+	}
+
+	/**
+	 * @return decoded last reference token of this pointer.
+	 */
+	public String getLastReferenceToken() {
+		return referenceTokens[referenceTokens.length - 1];
+	}
+
+	/**
+	 * @return array index represented by the last reference token, or {@link #NOT_AN_INDEX}.
+	 */
+	public int getLastArrayIndex() {
+		return arrayIndexes[arrayIndexes.length - 1];
+	}
+
+	/**
+	 * @return true if the last reference token of this pointer is an array index.
+	 */
+	public boolean isLastTokenArrayIndex() {
+		return getLastArrayIndex() != NOT_AN_INDEX;
+	}
+
+	/**
+	 * Checks if the given pointer is this pointer or one of its ancestors. Array indexes are compared
+	 * by value, so "/a/01" starts with "/a/1".
+	 *
+	 * @param prefix - pointer to check.
+	 * @return true if the location of this pointer is the location of the given pointer, or inside it.
+	 */
+	public boolean startsWith(JsonPointer prefix) {
+		if (prefix.getTokenCount() > getTokenCount())
+			return false;
+		for (int i = 0; i < prefix.getTokenCount(); i++) {
+			if (arrayIndexes[i] != prefix.arrayIndexes[i])
+				return false;
+			if (arrayIndexes[i] == NOT_AN_INDEX && !referenceTokens[i].equals(prefix.referenceTokens[i]))
+				return false;
+		}
+		return true;
 	}
-	
-	private String decodeEscapedCharSeqs(String jsonPointer) {
+
+	/**
+	 * Returns the pointer made of the reference tokens of this pointer starting at the given
+	 * position, i.e. the location of this pointer relative to its ancestor with fromIdx tokens.
+	 * 
+	 * @param fromIdx - position of the first reference token to keep.
+	 * @return relative json pointer.
+	 */
+	public JsonPointer subPointer(int fromIdx) {
+		if (fromIdx == 0)
+			return this;
+		StringBuilder pointer = new StringBuilder();
+		for (int i = fromIdx; i < referenceTokens.length; i++) {
+			pointer.append(FORWARD_SLASH);
+			pointer.append(arrayIndexes[i] != NOT_AN_INDEX ?
+					String.valueOf(arrayIndexes[i]) : encodeReferenceToken(referenceTokens[i]));
+		}
+		return compile(pointer.toString());
+	}
+
+	/**
+	 * Encodes '~' and '/' in the given reference token, as required to make it part of a json pointer.
+	 */
+	public static String encodeReferenceToken(String referenceToken) {
+		if (referenceToken.indexOf('~') < 0 && referenceToken.indexOf('/') < 0)
+			return referenceToken;
+		return referenceToken.
+				replace(TILDA, ENCODED_CHAR_TILDA).
+				replace(FORWARD_SLASH, ENCODED_CHAR_FORWARD_SLASH);
+	}
+
+	private static String decodeEscapedCharSeqs(String jsonPointer) {
+		if (jsonPointer.indexOf('~') < 0)
+			return jsonPointer;
 		return jsonPointer.
 				replace(ENCODED_CHAR_FORWARD_SLASH, FORWARD_SLASH).
 				replace(ENCODED_CHAR_TILDA, TILDA);
 	}
-	
+
 	@Override
 	public boolean equals(Object other) {
 		if (other != null && other instanceof JsonPointer &&
@@ -163,14 +412,14 @@ public class JsonPointer {
 		}
 		return false;
 	}
-	
+
 	@Override
 	public String toString() {
 		return getJsonPtr();
 	}
-	
+
 	@Override
 	public int hashCode() {
 		return getJsonPtr().hashCode();
 	}
-}
\ No newline at end of file
+}
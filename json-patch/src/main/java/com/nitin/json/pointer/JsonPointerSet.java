@@ -0,0 +1,183 @@
+package com.nitin.json.pointer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.node.MissingNode;
+
+/**
+ * A set of json pointers which are evaluated together, in a single walk of the document.
+ *
+ * The pointers are kept in a trie of their reference tokens, so pointers which share a prefix, e.g.
+ * "/topology/appservers/1/host" and "/topology/appservers/1/protocols", walk that prefix once. The
+ * walk only enters the parts of the document which some pointer refers to.
+ *
+ * Usage:
+ * <pre>
+ * JsonPointerSet pointers = new JsonPointerSet("/topology/LBR/host", "/topology/appservers/0/host");
+ * for (Map.Entry&lt;JsonPointer, JsonNode&gt; value : pointers.getValues(document).entrySet())
+ *     ...
+ * </pre>
+ * Instances are immutable and can be shared across threads.
+ *
+ * @author Nitin Patel
+ */
+public class JsonPointerSet {
+
+	private final TrieNode root = new TrieNode();
+	private final List<JsonPointer> pointers = new ArrayList<JsonPointer>();
+
+	/**
+	 * @param pointers - pointers to evaluate.
+	 */
+	public JsonPointerSet(Collection<JsonPointer> pointers) {
+		for (JsonPointer pointer : pointers) {
+			add(pointer);
+		}
+		root.freeze();
+	}
+
+	/**
+	 * @param pointers - pointers to evaluate, represented as strings.
+	 */
+	public JsonPointerSet(String... pointers) {
+		for (String pointer : pointers) {
+			add(JsonPointer.compile(pointer));
+		}
+		root.freeze();
+	}
+
+	private void add(JsonPointer pointer) {
+		pointers.add(pointer);
+		if (pointer.getJsonPtr() == null)
+			return;
+		TrieNode node = root;
+		for (int i = 0; i < pointer.getTokenCount(); i++) {
+			node = node.child(pointer, i);
+		}
+		node.slotList.add(pointers.size() - 1);
+	}
+
+	/**
+	 * @return number of pointers in this set.
+	 */
+	public int size() {
+		return pointers.size();
+	}
+
+	/**
+	 * Evaluates every pointer of this set against the given document. Unlike
+	 * {@link JsonPointer#getValue(JsonNode)}, a pointer which does not resolve does not fail,
+	 * its value is a {@link MissingNode} instead.
+	 *
+	 * @param node - json document against which the pointers are evaluated.
+	 * @return value of each pointer, in the order the pointers were given; a {@link MissingNode}
+	 * for the pointers which do not refer to a node of the document.
+	 */
+	public Map<JsonPointer, JsonNode> getValues(JsonNode node) {
+		JsonNode[] values = new JsonNode[pointers.size()];
+		if (node != null)
+			root.resolve(node, values);
+		Map<JsonPointer, JsonNode> valueMap = new LinkedHashMap<JsonPointer, JsonNode>(values.length * 4 / 3 + 1);
+		for (int i = 0; i < values.length; i++) {
+			valueMap.put(pointers.get(i), values[i] != null ? values[i] : MissingNode.getInstance());
+		}
+		return valueMap;
+	}
+
+	/*
+	 * Node of the trie, with the positions of the pointers which end at it, and its children by
+	 * reference token. Children are collected in maps while the set is built, and then frozen
+	 * into arrays which are cheaper to walk.
+	 */
+	private static class TrieNode {
+		List<Integer> slotList = new ArrayList<Integer>(1);
+		Map<String, TrieNode> members;
+		Map<Integer, TrieNode> elements;
+		int[] slots;
+		String[] memberNames;
+		TrieNode[] memberNodes;
+		int[] elementIndexes;
+		TrieNode[] elementNodes;
+
+		TrieNode child(JsonPointer pointer, int idx) {
+			TrieNode child;
+			if (pointer.getArrayIndex(idx) != JsonPointer.NOT_AN_INDEX) {
+				if (elements == null)
+					elements = new HashMap<Integer, TrieNode>();
+				child = elements.get(pointer.getArrayIndex(idx));
+				if (child == null) {
+					child = new TrieNode();
+					elements.put(pointer.getArrayIndex(idx), child);
+				}
+			} else {
+				if (members == null)
+					members = new HashMap<String, TrieNode>();
+				child = members.get(pointer.getReferenceToken(idx));
+				if (child == null) {
+					child = new TrieNode();
+					members.put(pointer.getReferenceToken(idx), child);
+				}
+			}
+			return child;
+		}
+
+		void freeze() {
+			slots = new int[slotList.size()];
+			for (int i = 0; i < slots.length; i++) {
+				slots[i] = slotList.get(i);
+			}
+			slotList = null;
+			if (members != null) {
+				memberNames = members.keySet().toArray(new String[members.size()]);
+				memberNodes = new TrieNode[memberNames.length];
+				for (int i = 0; i < memberNames.length; i++) {
+					memberNodes[i] = members.get(memberNames[i]);
+					memberNodes[i].freeze();
+				}
+				members = null;
+			}
+			if (elements != null) {
+				elementIndexes = new int[elements.size()];
+				elementNodes = new TrieNode[elementIndexes.length];
+				int i = 0;
+				for (Map.Entry<Integer, TrieNode> element : elements.entrySet()) {
+					elementIndexes[i] = element.getKey();
+					elementNodes[i] = element.getValue();
+					elementNodes[i++].freeze();
+				}
+				elements = null;
+			}
+		}
+
+		/*
+		 * Records the given node as the value of the pointers ending here, and walks into the children
+		 * which exist in the document. Like JsonPointer, array indexes only resolve on arrays and member
+		 * names only on objects.
+		 */
+		void resolve(JsonNode node, JsonNode[] values) {
+			for (int slot : slots) {
+				values[slot] = node;
+			}
+			if (memberNames != null && node.isObject()) {
+				for (int i = 0; i < memberNames.length; i++) {
+					JsonNode child = node.get(memberNames[i]);
+					if (child != null)
+						memberNodes[i].resolve(child, values);
+				}
+			}
+			if (elementIndexes != null && node.isArray()) {
+				for (int i = 0; i < elementIndexes.length; i++) {
+					JsonNode child = node.get(elementIndexes[i]);
+					if (child != null)
+						elementNodes[i].resolve(child, values);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package com.nitin.json.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import static com.nitin.json.util.LoggerUtils.*;
+
+/**
+ * Append-only file of records, memory-mapped for reading and writing. The mapping is replaced by a
+ * larger one when it is full, so an append copies the record only.
+ *
+ * Record layout: type (byte), payload length (int), key length (int), key (UTF-8), version (int),
+ * payload, CRC32 of everything before it (int). A zero type byte marks the end of the journal; a
+ * record cut short by a crash fails its checksum, and the journal ends before it.
+ *
+ * Instances are not thread safe, except {@link #read(int)} on offsets returned before.
+ *
+ * @author Nitin Patel
+ */
+class PatchJournal implements Closeable {
+
+	static final byte SNAPSHOT = 1;
+	static final byte PATCH = 2;
+	private static final int INITIAL_SIZE = 1 << 20;
+	//type, payload length, key length and version
+	private static final int HEADER_SIZE = 13;
+	private static final int CHECKSUM_SIZE = 4;
+
+	private final Path file;
+	private final FileChannel channel;
+	private volatile MappedByteBuffer buffer;
+	private int end;
+
+	/**
+	 * Visitor of the records found while opening the journal.
+	 */
+	interface RecordVisitor {
+		void visit(byte type, String key, int version, int offset);
+	}
+
+	/**
+	 * Opens the journal in the given file, creating it if needed, and passes every valid record to the visitor.
+	 */
+	PatchJournal(Path file, RecordVisitor visitor) throws IOException {
+		this.file = file;
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		long size = channel.size();
+		if (size > Integer.MAX_VALUE) {
+			channel.close();
+			throw new IOException("Journal "+file+" of "+size+" bytes is too large to be mapped");
+		}
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, INITIAL_SIZE));
+		end = scan(visitor);
+	}
+
+	/*
+	 * Walks the records up to the end marker or the first invalid record, and returns the offset after
+	 * the last valid one.
+	 */
+	private int scan(RecordVisitor visitor) {
+		ByteBuffer view = buffer.duplicate();
+		int offset = 0;
+		while (offset + HEADER_SIZE + CHECKSUM_SIZE <= view.capacity()) {
+			byte type = view.get(offset);
+			if (type == 0)
+				return offset;
+			int payloadLength = view.getInt(offset + 1);
+			int keyLength = view.getInt(offset + 5);
+			long recordSize = (long)HEADER_SIZE + keyLength + payloadLength + CHECKSUM_SIZE;
+			if (type != SNAPSHOT && type != PATCH || payloadLength < 0 || keyLength < 0
+					|| offset + recordSize > view.capacity()) {
+				logInvalidRecord(offset);
+				return offset;
+			}
+			int checksumOffset = (int)(offset + recordSize - CHECKSUM_SIZE);
+			if (view.getInt(checksumOffset) != checksum(view, offset, checksumOffset)) {
+				logInvalidRecord(offset);
+				return offset;
+			}
+			byte[] key = new byte[keyLength];
+			view.position(offset + 9);
+			view.get(key);
+			visitor.visit(type, new String(key, StandardCharsets.UTF_8), view.getInt(offset + 9 + keyLength), offset);
+			offset = checksumOffset + CHECKSUM_SIZE;
+		}
+		return offset;
+	}
+
+	private void logInvalidRecord(int offset) {
+		getLogger().warning("Journal "+file+" ends with an incomplete or corrupt record at offset "+offset
+				+", which is ignored and overwritten by the next record");
+	}
+
+	private static int checksum(ByteBuffer view, int from, int to) {
+		ByteBuffer bytes = view.duplicate();
+		bytes.limit(to).position(from);
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		return (int)crc.getValue();
+	}
+
+	/**
+	 * Appends a record.
+	 *
+	 * @return offset of the record, to read its payload back.
+	 */
+	int append(byte type, String key, int version, byte[] payload) throws IOException {
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		long recordSize = (long)HEADER_SIZE + keyBytes.length + payload.length + CHECKSUM_SIZE;
+		ensureCapacity(end + recordSize + 1);
+		ByteBuffer view = buffer.duplicate();
+		int offset = end;
+		view.position(offset);
+		view.put(type).putInt(payload.length).putInt(keyBytes.length).put(keyBytes).putInt(version).put(payload);
+		view.putInt(checksum(view, offset, view.position()));
+		//marks the end, in case a longer invalid record was cut short there
+		view.put((byte)0);
+		end = view.position() - 1;
+		return offset;
+	}
+
+	private void ensureCapacity(long size) throws IOException {
+		if (size <= buffer.capacity())
+			return;
+		if (size > Integer.MAX_VALUE)
+			throw new IOException("Journal "+file+" can not grow beyond 2GB");
+		long capacity = Math.min(Integer.MAX_VALUE, Math.max(size, 2L * buffer.capacity()));
+		getLogger().fine(() -> "Growing journal "+file+" to "+capacity+" bytes");
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+	}
+
+	/**
+	 * @param offset - offset of a record.
+	 * @return payload of the record, as a buffer over the mapped file.
+	 */
+	ByteBuffer read(int offset) {
+		ByteBuffer view = buffer.duplicate();
+		int payloadLength = view.getInt(offset + 1);
+		int payloadOffset = offset + HEADER_SIZE + view.getInt(offset + 5);
+		view.limit(payloadOffset + payloadLength).position(payloadOffset);
+		return view.slice();
+	}
+
+	/**
+	 * @return number of bytes used by the records.
+	 */
+	int size() {
+		return end;
+	}
+
+	/**
+	 * Writes the appended records to the storage device.
+	 */
+	void force() {
+		buffer.force();
+	}
+
+	@Override
+	public void close() throws IOException {
+		force();
+		channel.close();
+	}
+}
@@ -0,0 +1,397 @@
+package com.nitin.json.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import com.nitin.json.diff.JsonDiff;
+import com.nitin.json.diff.PatchCollector;
+import com.nitin.json.patch.AppliedPatch;
+import com.nitin.json.patch.BinaryPatchCodec;
+import com.nitin.json.patch.JsonPatch;
+import com.nitin.json.patch.exception.JsonPatchException;
+import com.nitin.json.store.exception.JsonStoreException;
+import com.nitin.json.util.ByteBufferInputStream;
+import com.nitin.json.util.JsonNodeUtils;
+import static com.nitin.json.util.LoggerUtils.*;
+
+/**
+ * Embedded store of the versions of json documents, e.g. configuration history, which keeps the
+ * changes between versions instead of a full copy per version.
+ *
+ * Every document is stored under a key. Its first version is written as a full snapshot, and every
+ * later version as the patch from the version before it, in an append-only journal which is
+ * memory-mapped. Every {@link #getSnapshotInterval()} versions, a full snapshot of the document is
+ * written in the background, so reading an old version parses the nearest snapshot before it and
+ * replays at most that many patches.
+ *
+ * The latest version of every document read or written is kept in memory, and patched in place, so
+ * {@link #append(String, JsonPatch)} and {@link #getLatest(String)} cost the size of the change, not
+ * the size of the document. {@link #put(String, JsonNode)} diffs the whole document to find the change.
+ *
+ * Usage:
+ * <pre>
+ * try (VersionedStore store = new VersionedStore(Paths.get("config-history"))) {
+ *     store.put("topology", topology);
+ *     int version = store.append("topology", new JsonPatch(patch));
+ *     JsonNode first = store.get("topology", 1);
+ * }
+ * </pre>
+ * Instances are thread safe. A directory must not be opened by more than one instance at a time.
+ *
+ * @author Nitin Patel
+ */
+public class VersionedStore implements Closeable {
+
+	public static final int DEFAULT_SNAPSHOT_INTERVAL = 100;
+	private static final String JOURNAL_FILE = "journal.bin";
+	private static ObjectMapper mapper = new ObjectMapper();
+
+	private final int snapshotInterval;
+	private final PatchJournal journal;
+	private final Map<String, DocumentIndex> documents = new HashMap<String, DocumentIndex>();
+	private final JsonDiff jsonDiff = new JsonDiff();
+	private final ExecutorService compactor;
+
+	/**
+	 * Opens the store in the given directory, creating it if needed, with the default snapshot interval.
+	 *
+	 * @param directory - directory of the journal.
+	 * @throws IOException if the journal can not be opened.
+	 */
+	public VersionedStore(Path directory) throws IOException {
+		this(directory, DEFAULT_SNAPSHOT_INTERVAL);
+	}
+
+	/**
+	 * Opens the store in the given directory, creating it if needed.
+	 *
+	 * @param directory - directory of the journal.
+	 * @param snapshotInterval - number of versions after which a full snapshot of a document is written,
+	 * which bounds the number of patches replayed to read a version.
+	 * @throws IOException if the journal can not be opened.
+	 */
+	public VersionedStore(Path directory, int snapshotInterval) throws IOException {
+		if (snapshotInterval < 1)
+			throw new IllegalArgumentException("Snapshot interval must be positive: "+snapshotInterval);
+		this.snapshotInterval = snapshotInterval;
+		Files.createDirectories(directory);
+		journal = new PatchJournal(directory.resolve(JOURNAL_FILE), this::index);
+		compactor = Executors.newSingleThreadExecutor(task -> {
+			Thread thread = new Thread(task, "json-store-compactor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		getLogger().fine(() -> "Opened store "+directory+" with "+documents.size()+" documents");
+	}
+
+	/*
+	 * Adds a record found in the journal to the index of its document.
+	 */
+	private void index(byte type, String key, int version, int offset) {
+		DocumentIndex document = documents.get(key);
+		if (document == null) {
+			document = new DocumentIndex();
+			documents.put(key, document);
+		}
+		if (type == PatchJournal.SNAPSHOT)
+			document.snapshots.put(version, offset);
+		else
+			document.setPatch(version, offset);
+	}
+
+	/**
+	 * @return number of versions after which a full snapshot of a document is written.
+	 */
+	public int getSnapshotInterval() {
+		return snapshotInterval;
+	}
+
+	/**
+	 * @return keys of the stored documents.
+	 */
+	public synchronized Set<String> keys() {
+		return Collections.unmodifiableSet(new LinkedHashSet<String>(documents.keySet()));
+	}
+
+	/**
+	 * @param key - key of a document.
+	 * @return latest version number of the document, or 0 if there is no document under the key.
+	 */
+	public synchronized int getLatestVersion(String key) {
+		DocumentIndex document = documents.get(key);
+		return document == null ? 0 : document.getLatestVersion();
+	}
+
+	/**
+	 * Stores the given document as the next version of the document under the key, as the diff from
+	 * the latest version. A document equal to the latest version does not create a version.
+	 *
+	 * @param key - key of the document.
+	 * @param node - new version of the document, which is copied.
+	 * @return version number of the document.
+	 * @throws IOException if the journal can not be written.
+	 * @throws JsonStoreException if the latest version can not be read from the journal.
+	 */
+	public synchronized int put(String key, JsonNode node) throws IOException, JsonStoreException {
+		DocumentIndex document = documents.get(key);
+		if (document == null) {
+			int offset = journal.append(PatchJournal.SNAPSHOT, key, 1, mapper.writeValueAsBytes(node));
+			document = new DocumentIndex();
+			document.snapshots.put(1, offset);
+			document.latest = JsonNodeUtils.deepCopy(node);
+			documents.put(key, document);
+			return 1;
+		}
+		//collects the operations as they are, as parsing the diff would reparse escaped string values
+		PatchCollector diff = new PatchCollector();
+		jsonDiff.getDiff(loadLatest(key, document), node, diff);
+		if (diff.size() == 0)
+			return document.getLatestVersion();
+		int version = writePatch(key, document, diff.getPatch());
+		document.latest = JsonNodeUtils.deepCopy(node);
+		return version;
+	}
+
+	/**
+	 * Applies the patch on the latest version of the document under the key, and stores it as the next
+	 * version. The patch is atomic: if an operation fails, no version is stored.
+	 *
+	 * @param key - key of the document.
+	 * @param patch - change of the document.
+	 * @return version number of the patched document.
+	 * @throws JsonPatchException if the patch can not be applied.
+	 * @throws IOException if the journal can not be written.
+	 * @throws JsonStoreException if there is no document under the key, or the latest version can not be read.
+	 */
+	public synchronized int append(String key, JsonPatch patch) throws JsonPatchException, IOException, JsonStoreException {
+		DocumentIndex document = documents.get(key);
+		if (document == null)
+			throwJsonStoreException("No document is stored under key: "+key);
+		AppliedPatch applied = patch.applyInPlaceWithInverse(loadLatest(key, document));
+		document.latest = applied.getResult();
+		try {
+			return writePatch(key, document, patch);
+		} catch (IOException e) {
+			document.latest = applied.getInverse().applyInPlace(document.latest);
+			throw e;
+		}
+	}
+
+	/*
+	 * Writes the patch as the next version of the document, and schedules a snapshot when the
+	 * interval is reached.
+	 */
+	private int writePatch(String key, DocumentIndex document, JsonPatch patch) throws IOException {
+		int version = document.getLatestVersion() + 1;
+		document.setPatch(version, journal.append(PatchJournal.PATCH, key, version, BinaryPatchCodec.encode(patch)));
+		if (document.needsSnapshot(snapshotInterval) && !document.snapshotScheduled) {
+			document.snapshotScheduled = true;
+			compactor.execute(() -> compact(key));
+		}
+		return version;
+	}
+
+	/**
+	 * @param key - key of a document.
+	 * @param version - version number, from 1 to the latest version.
+	 * @return copy of the given version of the document, or null if there is no such version.
+	 * @throws JsonStoreException if the version can not be read from the journal.
+	 */
+	public JsonNode get(String key, int version) throws JsonStoreException {
+		Replay replay;
+		synchronized (this) {
+			DocumentIndex document = documents.get(key);
+			if (document == null || version < 1 || version > document.getLatestVersion())
+				return null;
+			if (version == document.getLatestVersion() && document.latest != null)
+				return JsonNodeUtils.deepCopy(document.latest);
+			replay = document.getReplay(version);
+		}
+		//the journal is only appended to, so the records are read without holding the lock
+		return replay(key, replay);
+	}
+
+	/**
+	 * @param key - key of a document.
+	 * @return latest version of the document, or null if there is no document under the key. The
+	 * returned node is the one kept by the store, and must not be modified.
+	 * @throws JsonStoreException if the latest version can not be read from the journal.
+	 */
+	public synchronized JsonNode getLatest(String key) throws JsonStoreException {
+		DocumentIndex document = documents.get(key);
+		return document == null ? null : loadLatest(key, document);
+	}
+
+	private JsonNode loadLatest(String key, DocumentIndex document) throws JsonStoreException {
+		if (document.latest == null)
+			document.latest = replay(key, document.getReplay(document.getLatestVersion()));
+		return document.latest;
+	}
+
+	/*
+	 * Parses the snapshot of the replay and applies its patches.
+	 */
+	private JsonNode replay(String key, Replay replay) throws JsonStoreException {
+		JsonNode node;
+		try {
+			ByteBuffer snapshot = journal.read(replay.snapshotOffset);
+			node = mapper.readTree(JsonNodeUtils.createParser(mapper.getJsonFactory(), snapshot));
+			for (int patchOffset : replay.patchOffsets) {
+				node = BinaryPatchCodec.decode(new ByteBufferInputStream(journal.read(patchOffset))).applyInPlace(node);
+			}
+		} catch (IOException | JsonPatchException e) {
+			String errorMsg = "Error occurred while trying to read version "+replay.version+" of document "+key
+					+" from the journal. Corresponding error message is: "+e.getMessage();
+			getLogger().log(Level.SEVERE, errorMsg, e);
+			throw new JsonStoreException(errorMsg, e);
+		}
+		getLogger().fine(() -> "Read version "+replay.version+" of document "+key+" replaying "
+				+replay.patchOffsets.length+" patches");
+		return node;
+	}
+
+	/**
+	 * Writes a full snapshot of the latest version of every document which has
+	 * {@link #getSnapshotInterval()} or more patches after its last snapshot, as the background
+	 * compaction does, and waits for it.
+	 *
+	 * @throws IOException if the journal can not be written.
+	 * @throws JsonStoreException if a version can not be read from the journal.
+	 */
+	public void compact() throws IOException, JsonStoreException {
+		for (String key : keys()) {
+			writeSnapshot(key);
+		}
+	}
+
+	/*
+	 * Background compaction of a document, which logs its errors as there is no caller to report them to.
+	 */
+	private void compact(String key) {
+		try {
+			writeSnapshot(key);
+		} catch (IOException | JsonStoreException | RuntimeException e) {
+			getLogger().log(Level.SEVERE, "Error occurred while trying to write a snapshot of document "+key
+					+". Corresponding error message is: "+e.getMessage(), e);
+		}
+	}
+
+	/*
+	 * Writes a snapshot of the latest version of the document if it needs one. The version is rebuilt
+	 * and serialized without holding the lock, so appends go on meanwhile.
+	 */
+	private void writeSnapshot(String key) throws IOException, JsonStoreException {
+		Replay replay;
+		synchronized (this) {
+			DocumentIndex document = documents.get(key);
+			document.snapshotScheduled = false;
+			if (!document.needsSnapshot(snapshotInterval))
+				return;
+			replay = document.getReplay(document.getLatestVersion());
+		}
+		byte[] snapshot = mapper.writeValueAsBytes(replay(key, replay));
+		synchronized (this) {
+			int offset = journal.append(PatchJournal.SNAPSHOT, key, replay.version, snapshot);
+			documents.get(key).snapshots.put(replay.version, offset);
+		}
+		getLogger().fine(() -> "Wrote snapshot of version "+replay.version+" of document "+key);
+	}
+
+	/**
+	 * Writes the stored versions to the storage device.
+	 */
+	public synchronized void flush() {
+		journal.force();
+	}
+
+	/**
+	 * Waits for the background compaction, and closes the journal.
+	 */
+	@Override
+	public void close() throws IOException {
+		compactor.shutdown();
+		try {
+			compactor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (this) {
+			journal.close();
+		}
+	}
+
+	private void throwJsonStoreException(String errorMsg) throws JsonStoreException {
+		getLogger().log(Level.SEVERE, errorMsg);
+		throw new JsonStoreException(errorMsg);
+	}
+
+	/*
+	 * Journal offsets of the records of a document: its snapshots by version, and the patch which
+	 * creates each version after the first.
+	 */
+	private static class DocumentIndex {
+		final NavigableMap<Integer, Integer> snapshots = new TreeMap<Integer, Integer>();
+		//offset of the patch of version i + 2 at index i
+		final List<Integer> patches = new ArrayList<Integer>();
+		JsonNode latest;
+		boolean snapshotScheduled;
+
+		int getLatestVersion() {
+			return patches.size() + 1;
+		}
+
+		void setPatch(int version, int offset) {
+			if (version != getLatestVersion() + 1)
+				throw new IllegalStateException("Version "+version+" follows version "+getLatestVersion());
+			patches.add(offset);
+		}
+
+		boolean needsSnapshot(int snapshotInterval) {
+			return getLatestVersion() - snapshots.lastKey() >= snapshotInterval;
+		}
+
+		/*
+		 * Returns the records to read to rebuild the given version: the nearest snapshot before it,
+		 * and the patches after that snapshot.
+		 */
+		Replay getReplay(int version) {
+			Map.Entry<Integer, Integer> snapshot = snapshots.floorEntry(version);
+			int[] patchOffsets = new int[version - snapshot.getKey()];
+			for (int i = 0; i < patchOffsets.length; i++) {
+				patchOffsets[i] = patches.get(snapshot.getKey() - 1 + i);
+			}
+			return new Replay(version, snapshot.getValue(), patchOffsets);
+		}
+	}
+
+	private static class Replay {
+		final int version;
+		final int snapshotOffset;
+		final int[] patchOffsets;
+
+		Replay(int version, int snapshotOffset, int[] patchOffsets) {
+			this.version = version;
+			this.snapshotOffset = snapshotOffset;
+			this.patchOffsets = patchOffsets;
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package com.nitin.json.store.exception;
+
+public class JsonStoreException extends Exception {
+
+	public JsonStoreException() {
+	}
+
+	public JsonStoreException(String errorMsg) {
+		super(errorMsg);
+	}
+
+	public JsonStoreException(String errorMsg, Exception e) {
+		super(errorMsg, e);
+	}
+
+}
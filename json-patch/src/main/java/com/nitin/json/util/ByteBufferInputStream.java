@@ -0,0 +1,67 @@
+package com.nitin.json.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Input stream over the remaining bytes of a buffer, e.g. a memory-mapped file, so that the
+ * bytes are parsed straight from the buffer. The position of the given buffer is not modified.
+ *
+ * @author Nitin Patel
+ */
+public class ByteBufferInputStream extends InputStream {
+
+	private final ByteBuffer buffer;
+
+	public ByteBufferInputStream(ByteBuffer buffer) {
+		this.buffer = buffer.duplicate();
+	}
+
+	/**
+	 * Maps the given file in memory, read only. The mapping remains valid after this method
+	 * returns, and is released when the buffer is garbage collected.
+	 *
+	 * @param path - file to map, which must be smaller than 2GB.
+	 * @return buffer with the content of the file.
+	 * @throws IOException if the file can not be read or is too large to be mapped.
+	 */
+	public static ByteBuffer map(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("File "+path+" of "+channel.size()+" bytes is too large to be mapped");
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	@Override
+	public int read() {
+		return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) {
+		if (length == 0)
+			return 0;
+		if (!buffer.hasRemaining())
+			return -1;
+		int count = Math.min(length, buffer.remaining());
+		buffer.get(bytes, offset, count);
+		return count;
+	}
+
+	@Override
+	public long skip(long count) {
+		int skipped = (int)Math.max(0, Math.min(count, buffer.remaining()));
+		buffer.position(buffer.position() + skipped);
+		return skipped;
+	}
+
+	@Override
+	public int available() {
+		return buffer.remaining();
+	}
+}
@@ -0,0 +1,85 @@
+package com.nitin.json.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.JsonNodeFactory;
+import org.codehaus.jackson.node.ObjectNode;
+
+import com.nitin.json.metrics.PatchMetrics;
+
+public class JsonNodeUtils {
+
+	private JsonNodeUtils() {
+	}
+
+	/**
+	 * Creates a deep copy of the given json node by walking the tree.
+	 *
+	 * Only the container nodes are copied, value nodes are immutable in jackson
+	 * and are shared between the source and the copy. This is considerably cheaper
+	 * than serializing the node to text and parsing it back.
+	 *
+	 * @param node - node to be copied, may be null.
+	 * @return deep copy of the given node.
+	 */
+	public static JsonNode deepCopy(JsonNode node) {
+		PatchMetrics metrics = MetricsUtils.getMetrics();
+		if (metrics == null)
+			return copy(node, null);
+		long[] count = new long[1];
+		JsonNode copy = copy(node, count);
+		metrics.nodesCloned(count[0]);
+		return copy;
+	}
+
+	/*
+	 * Copies the given node, and counts the copied containers if a counter is given.
+	 */
+	private static JsonNode copy(JsonNode node, long[] count) {
+		if (node == null)
+			return null;
+		if (node.isObject()) {
+			if (count != null)
+				count[0]++;
+			ObjectNode copy = JsonNodeFactory.instance.objectNode();
+			Iterator<Map.Entry<String, JsonNode>> fields = node.getFields();
+			while (fields.hasNext()) {
+				Map.Entry<String, JsonNode> field = fields.next();
+				copy.put(field.getKey(), copy(field.getValue(), count));
+			}
+			return copy;
+		}
+		if (node.isArray()) {
+			if (count != null)
+				count[0]++;
+			ArrayNode copy = JsonNodeFactory.instance.arrayNode();
+			for (int i = 0; i < node.size(); i++) {
+				copy.add(copy(node.get(i), count));
+			}
+			return copy;
+		}
+		return node;
+	}
+
+	/**
+	 * Creates a parser over the remaining bytes of the given buffer. Bytes of heap buffers are
+	 * parsed in place, other buffers, e.g. memory-mapped files, are read through a stream.
+	 * The position of the buffer is not modified.
+	 *
+	 * @param factory - factory of the parser.
+	 * @param buffer - json document, encoded in UTF-8, UTF-16 or UTF-32.
+	 * @return parser of the document.
+	 */
+	public static JsonParser createParser(JsonFactory factory, ByteBuffer buffer) throws IOException {
+		if (buffer.hasArray())
+			return factory.createJsonParser(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+		return factory.createJsonParser(new ByteBufferInputStream(buffer));
+	}
+}
@@ -0,0 +1,23 @@
+package com.nitin.json.util;
+
+import com.nitin.json.metrics.PatchMetrics;
+
+public class MetricsUtils {
+  private static volatile PatchMetrics metrics;
+
+  /**
+   * @return registered metrics listener, or null if none is registered.
+   */
+  public static PatchMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Registers the listener of the patch and diff metrics, replacing the previous one.
+   *
+   * @param patchMetrics - listener, or null to stop measuring.
+   */
+  public static void setMetrics(PatchMetrics patchMetrics) {
+    metrics = patchMetrics;
+  }
+}
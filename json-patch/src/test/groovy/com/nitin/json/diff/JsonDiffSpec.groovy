@@ -1,11 +1,22 @@
 package com.nitin.json.diff
 
 import java.io.File
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ForkJoinPool
+import org.codehaus.jackson.JsonFactory
 import org.codehaus.jackson.JsonNode
 import org.codehaus.jackson.map.ObjectMapper
 import spock.lang.Specification
 import com.nitin.json.diff.JsonDiff
 import com.nitin.json.patch.JsonPatch
+import com.nitin.json.patch.exception.JsonPatchException
+import com.nitin.json.util.JsonNodeUtils
 
 class JsonDiffSpec extends Specification {
   private static String sampleJsonDir = "src"+File.separator+"test"+File.separator+"resources"+File.separator;
@@ -25,6 +36,398 @@ class JsonDiffSpec extends Specification {
     applyJsonPatch("topology-diff-output.json", "sample-topology.json") == getExpectedResult("other-topology.json");
   }
   
+  def "Array Json Diff Test"() {
+    expect:
+    new JsonDiff().getDiff(source, other).toString() == expectedDiff
+    
+    where:
+    source               |   other                |   expectedDiff
+    '[1, 2, 3]'          |   '[0, 1, 2, 3]'       |   '[{"op":"add","path":"/0","value":0}]'
+    '[1, 2, 3]'          |   '[1, 3]'             |   '[{"op":"remove","path":"/1"}]'
+    '[1, 2, 3]'          |   '[2, 3, 1]'          |   '[{"op":"move","from":"/0","path":"/2"}]'
+    '[{"a": 1}, 2, 3]'   |   '[{"a": 5}, 2, 3]'   |   '[{"op":"replace","path":"/0/a","value":5}]'
+  }
+  
+  def "Array Json Diff round trip Test"() {
+    given:
+    Random random = new Random(42)
+    ObjectMapper mapper = new ObjectMapper()
+    
+    expect:
+    (1..200).every {
+      def source = (0..<random.nextInt(12)).collect { random.nextInt(6) }
+      def other = (0..<random.nextInt(12)).collect { random.nextInt(6) }
+      JsonNode diff = new JsonDiff().getDiff(mapper.valueToTree(source), mapper.valueToTree(other))
+      new JsonPatch(diff.toString()).apply(mapper.valueToTree(source)) == mapper.valueToTree(other)
+    }
+  }
+  
+  def "Json Diff with a reused fingerprint Test"() {
+    given:
+    ObjectMapper mapper = new ObjectMapper()
+    JsonFingerprint baseline = JsonFingerprint.of(mapper.readTree(getExpectedResult("sample-topology.json")))
+    
+    expect:
+    baseline.get(mapper.readTree('{"a": 1, "b": [1, 2]}')) == baseline.get(mapper.readTree('{"b": [1, 2], "a": 1}'))
+    baseline.get(mapper.readTree('[1, 2]')) != baseline.get(mapper.readTree('[2, 1]'))
+    new JsonDiff().getDiff(baseline, mapper.readTree(getExpectedResult("other-topology.json"))).toString() ==
+        getExpectedResult("topology-diff-output.json")
+    new JsonDiff().getDiff(baseline, baseline.getDocument()).size() == 0
+  }
+  
+  def "Parallel Json Diff Test"() {
+    given:
+    ObjectMapper mapper = new ObjectMapper()
+    Random random = new Random(7)
+    def source = (0..<500).collectEntries { ["field$it", (0..<20).collect { random.nextInt(5) }] }
+    def other = source.collectEntries { key, value -> [key, value.collect { random.nextInt(10) == 0 ? random.nextInt(5) : it }] }
+    JsonDiff parallelDiff = new JsonDiff()
+    parallelDiff.setForkJoinPool(ForkJoinPool.commonPool())
+    parallelDiff.setParallelThreshold(threshold)
+    
+    expect:
+    parallelDiff.getDiff(mapper.valueToTree(source), mapper.valueToTree(other)) ==
+        new JsonDiff().getDiff(mapper.valueToTree(source), mapper.valueToTree(other))
+    
+    where:
+    threshold << [1, 4, 64]
+  }
+  
+  def "Streaming Json Diff Test"() {
+    given:
+    ObjectMapper mapper = new ObjectMapper()
+    JsonFactory factory = mapper.getJsonFactory()
+    StringWriter writer = new StringWriter()
+    new JsonDiff().getDiffStreaming(factory.createJsonParser(source), factory.createJsonParser(other),
+        factory.createJsonGenerator(writer))
+    
+    expect:
+    new JsonPatch(writer.toString()).apply(mapper.readTree(source)) == mapper.readTree(other)
+    
+    where:
+    source                                               |   other
+    getExpectedResult("sample-topology.json")            |   getExpectedResult("other-topology.json")
+    getExpectedResult("diff-source.json")                |   getExpectedResult("diff-other.json")
+    '{"a": 1, "b": {"c": [1, 2, 3]}, "d": "x"}'          |   '{"a": 1, "b": {"c": [1, 5]}, "d": "x", "e": null}'
+    '{"a": 1, "b": 2, "c": {"d": 1}}'                    |   '{"b": 3, "c": {"d": 1}, "a": 1}'
+    '{"a": [1, {"b": 2}], "m/n": {"~": 1}}'              |   '{"a": {"b": 2}, "m/n": {"~": 2}}'
+    '[1, 2]'                                             |   '[1, 2, [3], {"x": 4}]'
+    '"text"'                                             |   '{"a": 1}'
+  }
+  
+  def "Streaming Json Diff to a sink Test"() {
+    given:
+    JsonFactory factory = new ObjectMapper().getJsonFactory()
+    def operations = []
+    new JsonDiff().getDiffStreaming(factory.createJsonParser(getExpectedResult("sample-topology.json")),
+        factory.createJsonParser(getExpectedResult("sample-topology.json")), { operations << it } as DiffSink)
+    new JsonDiff().getDiffStreaming(factory.createJsonParser('{"a": [1, 2], "b": 1}'),
+        factory.createJsonParser('{"a": [1, 3], "b": 1}'), { operations << it } as DiffSink)
+    
+    expect:
+    operations*.toString() == ['{"op":"replace","path":"/a/1","value":3}']
+  }
+  
+  def "Json Diff of bytes, buffers, streams and files Test"() {
+    given:
+    Path source = Paths.get(sampleJsonDir+"sample-topology.json")
+    Path other = Paths.get(sampleJsonDir+"other-topology.json")
+    String expected = getExpectedResult("topology-diff-output.json")
+    ByteArrayOutputStream output = new ByteArrayOutputStream()
+    new JsonDiff().getDiffStreaming(source, other, output)
+    
+    expect:
+    new JsonDiff().getDiff(source, other).toString() == expected
+    new JsonDiff().getDiff(Files.readAllBytes(source), Files.readAllBytes(other)).toString() == expected
+    new JsonDiff().getDiff(ByteBuffer.wrap(Files.readAllBytes(source)), ByteBuffer.wrap(Files.readAllBytes(other))).toString() == expected
+    new JsonDiff().getDiff(Files.newInputStream(source), Files.newInputStream(other)).toString() == expected
+    new JsonPatch(output.toByteArray()).apply(source) == new ObjectMapper().readTree(other.toFile())
+  }
+  
+  def "Json Diff instance reused across calls and threads Test"() {
+    given:
+    ObjectMapper mapper = new ObjectMapper()
+    JsonDiff jsonDiff = new JsonDiff()
+    JsonNode source = mapper.readTree(getExpectedResult("sample-topology.json"))
+    JsonNode other = mapper.readTree(getExpectedResult("other-topology.json"))
+    String expected = getExpectedResult("topology-diff-output.json")
+    
+    ExecutorService executor = Executors.newFixedThreadPool(4)
+    
+    when:
+    def diffs = (1..16).collect { executor.submit({ jsonDiff.getDiff(source, other).toString() } as Callable) }
+    
+    then:
+    jsonDiff.getDiff(source, other).toString() == expected
+    jsonDiff.getDiff(source, other).toString() == expected
+    diffs*.get().every { it == expected }
+    
+    cleanup:
+    executor.shutdown()
+  }
+  
+  def "Json Diff to consumers, generators and collectors Test"() {
+    given:
+    ObjectMapper mapper = new ObjectMapper()
+    JsonNode source = mapper.readTree(getExpectedResult("sample-topology.json"))
+    JsonNode other = mapper.readTree(getExpectedResult("other-topology.json"))
+    def operations = []
+    StringWriter writer = new StringWriter()
+    PatchCollector collector = new PatchCollector()
+    JsonDiff jsonDiff = new JsonDiff()
+    
+    when:
+    jsonDiff.getDiff(source, other, DiffSink.of({ operations << it }))
+    jsonDiff.getDiff(source, other, mapper.getJsonFactory().createJsonGenerator(writer))
+    jsonDiff.getDiff(source, other, collector)
+    
+    then:
+    operations*.toString() == mapper.readTree(getExpectedResult("topology-diff-output.json")).collect { it.toString() }
+    writer.toString() == getExpectedResult("topology-diff-output.json")
+    collector.size() == operations.size()
+    collector.getPatch().apply(source) == other
+  }
+  
+  def "Json Diff of arrays matched by key Test"() {
+    given:
+    ObjectMapper mapper = new ObjectMapper()
+    JsonDiff jsonDiff = new JsonDiff()
+    jsonDiff.setArrayKey("/servers/*", "name")
+    JsonNode source = mapper.readTree('{"servers": [{"name": "a", "port": 1}, {"name": "b", "port": 2}, {"name": "c", "port": 3}]}')
+    JsonNode other = mapper.readTree('{"servers": [{"name": "c", "port": 3}, {"name": "b", "port": 5}]}')
+    
+    when:
+    JsonNode diff = jsonDiff.getDiff(source, other)
+    
+    then:
+    diff.toString() == '[{"op":"remove","path":"/servers/0"},{"op":"move","from":"/servers/0","path":"/servers/1"},{"op":"replace","path":"/servers/1/port","value":5}]'
+    new JsonPatch(diff.toString()).apply(source) == other
+    jsonDiff.getArrayKeys() == ["/servers/*": "name"]
+  }
+  
+  def "Json Diff of arrays matched by key round trip Test"() {
+    given:
+    Random random = new Random(7)
+    ObjectMapper mapper = new ObjectMapper()
+    JsonDiff jsonDiff = new JsonDiff()
+    jsonDiff.setArrayKey("/*/servers/*", "name")
+    jsonDiff.setArrayKey("/*/servers/*/ports/*", "protocol")
+    def randomServers = {
+      (0..<random.nextInt(8)).collect {
+        switch (random.nextInt(10)) {
+          case 0: return random.nextInt(3)
+          case 1: return [port: random.nextInt(3)]
+          default: return [name: "s"+random.nextInt(8), port: random.nextInt(3),
+            ports: (0..<random.nextInt(4)).collect { [protocol: ["http", "https", "t3"][random.nextInt(3)], port: random.nextInt(2)] }]
+        }
+      }
+    }
+    
+    expect:
+    (1..300).every {
+      JsonNode source = mapper.valueToTree([a: [servers: randomServers()]])
+      JsonNode other = mapper.valueToTree([a: [servers: randomServers()]])
+      new JsonPatch(jsonDiff.getDiff(source, other).toString()).apply(source) == other
+    }
+  }
+  
+  def "Json Diff with a path filter Test"() {
+    given:
+    ObjectMapper mapper = new ObjectMapper()
+    JsonDiff jsonDiff = new JsonDiff()
+    jsonDiff.setPathFilter(new PathFilter(includes, ["/runtime", "/servers/*/stats"]))
+    String source = '{"a": 1, "b": 1, "runtime": {"time": 1}, "servers": [{"name": "s1", "stats": 1}, {"name": "s2", "stats": 2}]}'
+    String other = '{"a": 2, "b": 2, "runtime": {"time": 2}, "servers": [{"name": "s1", "stats": 3}, {"name": "s3", "stats": 4}]}'
+    StringWriter writer = new StringWriter()
+    
+    when:
+    jsonDiff.getDiffStreaming(mapper.getJsonFactory().createJsonParser(source), mapper.getJsonFactory().createJsonParser(other),
+        mapper.getJsonFactory().createJsonGenerator(writer))
+    
+    then:
+    jsonDiff.getDiff(source, other).toString() == expectedDiff
+    writer.toString() == expectedDiff
+    
+    where:
+    includes              |   expectedDiff
+    []                    |   '[{"op":"replace","path":"/a","value":2},{"op":"replace","path":"/b","value":2},{"op":"replace","path":"/servers/1/name","value":"s3"}]'
+    ["/a", "/runtime"]    |   '[{"op":"replace","path":"/a","value":2}]'
+    ["/servers/*/name"]   |   '[{"op":"replace","path":"/servers/1/name","value":"s3"}]'
+    ["/servers/*/stats"]  |   '[]'
+  }
+  
+  def "Path filter accepts Test"() {
+    given:
+    PathFilter filter = new PathFilter(["/topology", "/runtime/*/version"], ["/topology/appservers/*/stats", "/topology/cache"])
+    
+    expect:
+    filter.accepts(path) == accepted
+    
+    where:
+    path                                    |   accepted
+    ""                                      |   false
+    "/topology"                             |   true
+    "/topology/LBR/host"                    |   true
+    "/topology/cache"                       |   false
+    "/topology/cache/entries"               |   false
+    "/topology/appservers/1/host"           |   true
+    "/topology/appservers/1/stats/uptime"   |   false
+    "/runtime/jvm"                          |   false
+    "/runtime/jvm/version"                  |   true
+    "/other"                                |   false
+  }
+  
+  def "Json Diff with a path filter round trip Test"() {
+    given:
+    Random random = new Random(5)
+    ObjectMapper mapper = new ObjectMapper()
+    JsonDiff jsonDiff = new JsonDiff()
+    PathFilter filter = PathFilter.excluding("/*/stats", "/servers/*/stats")
+    jsonDiff.setPathFilter(filter)
+    def randomDocument = {
+      [a: [stats: random.nextInt(2), b: random.nextInt(2)], c: [stats: random.nextInt(2)],
+        servers: (0..<random.nextInt(5)).collect { [name: "s"+random.nextInt(3), stats: random.nextInt(2)] }]
+    }
+    
+    expect:
+    (1..300).every {
+      JsonNode source = mapper.valueToTree(randomDocument())
+      JsonNode other = mapper.valueToTree(randomDocument())
+      JsonNode patched = new JsonPatch(jsonDiff.getDiff(source, other).toString()).apply(source)
+      PathFilter.isEqual(patched, other, filter.rootCursor()) && JsonFingerprint.of(patched, filter).get(patched) == JsonFingerprint.of(other, filter).get(other)
+    }
+  }
+  
+  def "Json Diff equality and first difference Test"() {
+    given:
+    ObjectMapper mapper = new ObjectMapper()
+    JsonDiff jsonDiff = new JsonDiff()
+    JsonNode sourceNode = mapper.readTree(source)
+    JsonNode otherNode = mapper.readTree(other)
+    
+    expect:
+    jsonDiff.isEqual(sourceNode, otherNode) == (difference == null)
+    jsonDiff.isEqual(JsonFingerprint.of(sourceNode), JsonFingerprint.of(otherNode)) == (difference == null)
+    jsonDiff.firstDifference(sourceNode, otherNode) == difference
+    
+    where:
+    source                              |   other                               |   difference
+    '{"a": [1, {"b": 2}], "c": "x"}'    |   '{"c": "x", "a": [1, {"b": 2}]}'    |   null
+    '{"a": [1, {"b": 2}], "c": "x"}'    |   '{"a": [1, {"b": 3}], "c": "y"}'    |   "/a/1/b"
+    '{"a": [1, 2]}'                     |   '{"a": [1, 2, 3]}'                  |   "/a/2"
+    '{"a": 1}'                          |   '{"a": 1, "d~": 2}'                 |   "/d~0"
+    '{"a": {"b": 1}}'                   |   '{"a": [1]}'                        |   "/a"
+  }
+  
+  def "Json Diff bounded to a number of operations Test"() {
+    given:
+    ObjectMapper mapper = new ObjectMapper()
+    JsonNode source = mapper.readTree(getExpectedResult("sample-topology.json"))
+    JsonNode other = mapper.readTree(getExpectedResult("other-topology.json"))
+    JsonDiff jsonDiff = new JsonDiff()
+    JsonNode fullDiff = jsonDiff.getDiff(source, other)
+    
+    when:
+    DiffResult result = jsonDiff.getDiff(source, other, maxOps)
+    
+    then:
+    result.getDiff().toList() == fullDiff.toList().take(maxOps)
+    result.isTruncated() == (maxOps < fullDiff.size())
+    
+    where:
+    maxOps << [0, 1, 3, 1000]
+  }
+
+  def "Json Diff bounded to a negative number of operations Test"() {
+    given:
+    ObjectMapper mapper = new ObjectMapper()
+
+    when:
+    new JsonDiff().getDiff(mapper.readTree('{"a": 1}'), mapper.readTree('{"a": 2}'), -1)
+
+    then:
+    thrown(IllegalArgumentException)
+  }
+
+  def "Tracked document diff Test"() {
+    given:
+    ObjectMapper mapper = new ObjectMapper()
+    JsonNode source = mapper.readTree('{"a": {"b": 1}, "c": [1, 2, 3], "d": "x"}')
+    TrackedDocument document = new TrackedDocument(JsonNodeUtils.deepCopy(source))
+    
+    when:
+    document.replace("/a/b", mapper.readTree('2'))
+    document.replace("/a/b", mapper.readTree('3'))
+    document.add("/c/-", mapper.readTree('4'))
+    document.remove("/c/3")
+    document.add("/e", mapper.readTree('{"f": 1}'))
+    document.add("/e/g", mapper.readTree('true'))
+    document.move("/d", "/h")
+    JsonPatch diff = document.diff()
+    
+    then:
+    document.getChangeCount() == 7
+    diff.toString() == '[{"op":"replace","path":"/a/b","value":3},{"op":"add","path":"/e","value":{"f":1,"g":true}},{"op":"move","from":"/d","path":"/h"}]'
+    diff.apply(source) == document.getNode()
+    
+    when:
+    JsonNode marked = JsonNodeUtils.deepCopy(document.getNode())
+    document.mark()
+    document.copy("/h", "/c/0")
+    
+    then:
+    document.getChangeCount() == 1
+    document.diff().apply(marked) == document.getNode()
+  }
+  
+  def "Tracked document diff of root replaces Test"() {
+    given:
+    ObjectMapper mapper = new ObjectMapper()
+    JsonNode source = mapper.readTree('{"a": 1}')
+    TrackedDocument document = new TrackedDocument(JsonNodeUtils.deepCopy(source))
+    
+    when:
+    document.replace("", mapper.readTree('[1, 2]'))
+    document.replace("", mapper.readTree('{"b": [1]}'))
+    document.add("", mapper.readTree('{"c": 2}'))
+    document.replace("/c", mapper.readTree('3'))
+    JsonPatch diff = document.diff()
+    
+    then:
+    document.getChangeCount() == 4
+    diff.toString() == '[{"op":"add","path":"","value":{"c":3}}]'
+    diff.apply(source) == document.getNode()
+  }
+  
+  def "Tracked document diff of random changes Test"() {
+    given:
+    Random random = new Random(11)
+    ObjectMapper mapper = new ObjectMapper()
+    JsonNode source = mapper.readTree('{"a": {"b": 1, "c": [1, 2, 3]}, "d": [{"e": 1}], "f": "x"}')
+    def paths = ["/a", "/a/b", "/a/c", "/a/c/0", "/a/c/1", "/a/c/-", "/d", "/d/0", "/d/-", "/d/0/e", "/f", "/g"]
+    def values = ['1', '"x"', '{"e": 2}', '[1]']
+    
+    expect:
+    (1..500).every {
+      TrackedDocument document = new TrackedDocument(JsonNodeUtils.deepCopy(source))
+      (1..20).each {
+        String path = paths[random.nextInt(paths.size())]
+        JsonNode value = mapper.readTree(values[random.nextInt(values.size())])
+        try {
+          switch (random.nextInt(4)) {
+            case 0: document.add(path, value); break
+            case 1: document.remove(path); break
+            case 2: document.replace(path, value); break
+            default: document.move(paths[random.nextInt(paths.size())], path)
+          }
+        } catch (JsonPatchException e) {
+          //a change which does not apply is not recorded
+        }
+      }
+      document.diff().apply(source) == document.getNode()
+    }
+  }
+  
   def getJsonDiff(source, other) {
     def diff = new JsonDiff().getDiff(new File(sampleJsonDir+source).text, new File(sampleJsonDir+other).text);
     println "Json Diff is: $diff"
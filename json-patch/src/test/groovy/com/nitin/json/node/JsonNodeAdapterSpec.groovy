@@ -0,0 +1,82 @@
+package com.nitin.json.node
+
+import java.io.File
+import org.codehaus.jackson.JsonNode
+import org.codehaus.jackson.map.ObjectMapper
+import spock.lang.Specification
+import com.nitin.json.diff.JsonDiff
+import com.nitin.json.patch.JsonPatch
+import com.nitin.json.patch.exception.JsonPatchException
+import com.nitin.json.pointer.JsonPointer
+import com.nitin.json.pointer.exception.JsonPointerException
+
+class JsonNodeAdapterSpec extends Specification {
+  private static String sampleJsonDir = "src"+File.separator+"test"+File.separator+"resources"+File.separator;
+  ObjectMapper mapper = new ObjectMapper()
+  com.fasterxml.jackson.databind.ObjectMapper mapper2 = new com.fasterxml.jackson.databind.ObjectMapper()
+  
+  def "Jackson 2 conversion round trip Test"() {
+    given:
+    JsonNode node = mapper.readTree(json)
+    com.fasterxml.jackson.databind.JsonNode node2 = Jackson2NodeAdapter.INSTANCE.fromJackson(node)
+    
+    expect:
+    node2.toString() == node.toString()
+    Jackson2NodeAdapter.INSTANCE.toJackson(node2) == node
+    Jackson2NodeAdapter.INSTANCE.toJackson(mapper2.readTree(json)).toString() == node.toString()
+    
+    where:
+    json << [getFile("sample-topology.json"), '[1, 12345678901, 123456789012345678901234, 1.5, 2.50, "x", true, null, {}]']
+  }
+  
+  def "Json Patch on Jackson 2 trees Test"() {
+    given:
+    String source = getFile("sample-topology.json")
+    com.fasterxml.jackson.databind.JsonNode document = mapper2.readTree(source)
+    JsonPatch jsonPatch = new JsonPatch(getFile("patch-pass.json"))
+    
+    when:
+    com.fasterxml.jackson.databind.JsonNode result = jsonPatch.apply(document, Jackson2NodeAdapter.INSTANCE)
+    
+    then:
+    mapper.readTree(result.toString()) == jsonPatch.apply(mapper.readTree(source))
+    document == mapper2.readTree(source)
+  }
+  
+  def "Negative Json Patch on Jackson 2 trees Test"() {
+    when:
+    new JsonPatch(getFile("patch-fail.json")).apply(mapper2.readTree(getFile("sample-topology.json")), Jackson2NodeAdapter.INSTANCE)
+    
+    then:
+    thrown(JsonPatchException)
+  }
+  
+  def "Json Pointer on Jackson 2 trees Test"() {
+    given:
+    com.fasterxml.jackson.databind.JsonNode document = mapper2.readTree('{"a": [{"b/c": 1}, 2], "~": "t"}')
+    
+    expect:
+    JsonPointer.compile("/a/0/b~1c").getValue(document, Jackson2NodeAdapter.INSTANCE).intValue() == 1
+    JsonPointer.compile("/~0").getValue(document, Jackson2NodeAdapter.INSTANCE).textValue() == "t"
+    
+    when:
+    JsonPointer.compile("/a/2").getValue(document, Jackson2NodeAdapter.INSTANCE)
+    
+    then:
+    thrown(JsonPointerException)
+  }
+  
+  def "Json Diff of Jackson 2 trees Test"() {
+    given:
+    String source = getFile("sample-topology.json")
+    String other = getFile("other-topology.json")
+    
+    expect:
+    new JsonDiff().getDiff(mapper2.readTree(source), mapper2.readTree(other), Jackson2NodeAdapter.INSTANCE) ==
+        new JsonDiff().getDiff(mapper.readTree(source), mapper.readTree(other))
+  }
+  
+  def getFile(file) {
+    new File(sampleJsonDir+file).text
+  }
+}
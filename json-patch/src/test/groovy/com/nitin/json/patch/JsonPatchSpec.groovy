@@ -1,12 +1,25 @@
 package com.nitin.json.patch
 
 import java.io.File;
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.util.concurrent.Executors
+import java.util.concurrent.ForkJoinPool
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.map.ObjectMapper
 import org.codehaus.jackson.node.ArrayNode;
 import spock.lang.Specification
 import com.nitin.json.patch.JsonPatch;
+import com.nitin.json.patch.exception.InvalidJsonPatchException
 import com.nitin.json.patch.exception.JsonPatchException
+import com.nitin.json.patch.vo.PatchOperationType
+import com.nitin.json.patch.vo.PatchResult
+import com.nitin.json.diff.JsonDiff
+import com.nitin.json.metrics.PatchStatistics
+import com.nitin.json.util.JsonNodeUtils
+import com.nitin.json.util.MetricsUtils
 
 class JsonPatchSpec extends Specification {
   private static String sampleJsonDir = "src"+File.separator+"test"+File.separator+"resources"+File.separator;
@@ -35,6 +48,466 @@ class JsonPatchSpec extends Specification {
     thrown(JsonPatchException)
   }
   
+  def "Json Patch does not modify the source document"() {
+    given:
+    String original = topologyDocument.toString()
+    JsonPatch jsonPatch = new JsonPatch('[{"op": "add", "path": "/topology/extra", "value": {"a": []}},' +
+        '{"op": "add", "path": "/topology/extra/a/0", "value": 1}]')
+    
+    when:
+    JsonNode first = jsonPatch.apply(topologyDocument)
+    JsonNode second = jsonPatch.apply(topologyDocument)
+    applyJsonPatch("patch-fail.json", topologyDocument)
+    
+    then:
+    thrown(JsonPatchException)
+    topologyDocument.toString() == original
+    first == second
+    first.path("topology").path("extra").toString() == '{"a":[1]}'
+  }
+  
+  def "Json Patch applied in place modifies the given document"() {
+    given:
+    JsonPatch jsonPatch = new JsonPatch(getPatchAsJsonString("patch-pass.json"))
+    
+    when:
+    JsonNode result = jsonPatch.applyInPlace(topologyDocument)
+    
+    then:
+    result.is(topologyDocument)
+    topologyDocument.toString() == getPatchAsJsonString("patchOutput.json")
+  }
+  
+  def "Streaming Json Patch Test"() {
+    given:
+    JsonPatch jsonPatch = new JsonPatch(patch)
+    StringWriter output = new StringWriter()
+    
+    when:
+    jsonPatch.applyStreaming(new StringReader(getPatchAsJsonString("sample-topology.json")), output)
+    
+    then:
+    output.toString() == jsonPatch.apply(topologyDocument).toString()
+    
+    where:
+    patch << [getPatchAsJsonString("patch-pass.json"),
+      '[{"op": "replace", "path": "/topology/LBR/port", "value": "8443"}, {"op": "remove", "path": "/topology/webservers/0"}]',
+      '[{"op": "move", "from": "/topology/LBR", "path": "/lbr"}, {"op": "test", "path": "/lbr/port", "value": "443"}]',
+      '[{"op": "replace", "path": "/topology", "value": {"a": 1}}, {"op": "add", "path": "/topology/b", "value": [2]}]',
+      '[{"op": "test", "path": "/topology/LBR/host", "value": "lbr.example.com"}, {"op": "remove", "path": "/topology/LBR"}, {"op": "add", "path": "/new", "value": 1}, {"op": "remove", "path": "/missing"}]',
+      '[{"op": "replace", "path": "/topology/LBR/port", "value": "1"}, {"op": "replace", "path": "/topology/LBR", "value": {"port": "2"}}, {"op": "replace", "path": "/topology/LBR/host", "value": "h"}]',
+      '[{"op": "add", "path": "/z", "value": 1}, {"op": "replace", "path": "/y", "value": 2}, {"op": "remove", "path": "/z"}, {"op": "add", "path": "/x", "value": {}}]',
+      '[{"op": "replace", "path": "/topology/webservers/0/port", "value": "1"}, {"op": "add", "path": "/topology/webservers/-", "value": {}}]']
+  }
+  
+  def "Negative Streaming Json Patch Test"() {
+    given:
+    JsonPatch jsonPatch = new JsonPatch(patch)
+    
+    when:
+    jsonPatch.applyStreaming(new StringReader(getPatchAsJsonString("sample-topology.json")), new StringWriter())
+    
+    then:
+    thrown(JsonPatchException)
+    
+    where:
+    patch << [getPatchAsJsonString("patch-fail.json"),
+      '[{"op": "replace", "path": "/topology/missing/port", "value": "8443"}]',
+      '[{"op": "remove", "path": "/topology/LBR"}, {"op": "test", "path": "/topology/LBR", "value": {}}]',
+      '[{"op": "add", "path": "/topology/webservers/host", "value": "h"}]',
+      '[{"op": "remove", "path": "/topology/LBR/port/x"}]']
+  }
+  
+  def "Optimized Json Patch Test"() {
+    expect:
+    new JsonPatch(patch).optimize().toString() == optimizedPatch
+    
+    where:
+    patch                                                                                                      |   optimizedPatch
+    '[{"op":"add","path":"/a","value":1},{"op":"replace","path":"/a","value":2}]'                             |   '[{"op":"add","path":"/a","value":2}]'
+    '[{"op":"replace","path":"/a","value":1},{"op":"replace","path":"/b","value":1},{"op":"replace","path":"/a","value":2}]' |   '[{"op":"replace","path":"/a","value":2},{"op":"replace","path":"/b","value":1}]'
+    '[{"op":"add","path":"/a/1","value":1},{"op":"remove","path":"/a/1"}]'                                    |   '[]'
+    '[{"op":"replace","path":"/a","value":{"b":1}},{"op":"replace","path":"/a/b","value":2}]'                 |   '[{"op":"replace","path":"/a","value":{"b":2}}]'
+    '[{"op":"replace","path":"/a/b","value":1},{"op":"add","path":"/a/c","value":1},{"op":"remove","path":"/a"}]' |   '[{"op":"remove","path":"/a"}]'
+    '[{"op":"add","path":"/a","value":1},{"op":"test","path":"/a","value":1}]'                                 |   '[{"op":"add","path":"/a","value":1}]'
+    '[{"op":"add","path":"/a/0","value":1},{"op":"remove","path":"/a/1"}]'                                    |   '[{"op":"add","path":"/a/0","value":1},{"op":"remove","path":"/a/1"}]'
+    '[{"op":"add","path":"/a","value":1},{"op":"remove","path":"/a"}]'                                         |   '[{"op":"add","path":"/a","value":1},{"op":"remove","path":"/a"}]'
+    '[{"op":"replace","path":"","value":2},{"op":"add","path":"","value":"s0"}]'                               |   '[{"op":"add","path":"","value":"s0"}]'
+    '[{"op":"add","path":"","value":1},{"op":"replace","path":"","value":{"a":1}}]'                            |   '[{"op":"add","path":"","value":{"a":1}}]'
+    '[{"op":"add","path":"","value":1},{"op":"remove","path":""}]'                                             |   '[{"op":"add","path":"","value":1},{"op":"remove","path":""}]'
+    '[{"op":"remove","path":""},{"op":"add","path":"","value":[1]}]'                                           |   '[{"op":"remove","path":""},{"op":"add","path":"","value":[1]}]'
+  }
+  
+  def "Optimized Json Patch gives the same result Test"() {
+    given:
+    Random random = new Random(11)
+    ObjectMapper mapper = new ObjectMapper()
+    JsonNode document = mapper.readTree('{"a": {"b": 1, "c": [1, 2, 3]}, "d": [{"e": 1}], "f": "x"}')
+    def paths = ["/a", "/a/b", "/a/c", "/a/c/0", "/a/c/1", "/a/c/-", "/d", "/d/0", "/d/0/e", "/f", "/g", "/a/x"]
+    def values = ['1', '"x"', '{"e": 2}', '[1]', '{"b": 1, "c": []}']
+    def types = ["add", "remove", "replace", "move", "copy", "test"]
+    int applied = 0
+    
+    expect:
+    (1..3000).every {
+      def operations = (0..<(2 + random.nextInt(5))).collect {
+        String type = types[random.nextInt(types.size())]
+        String operation = '{"op":"'+type+'","path":"'+paths[random.nextInt(paths.size())]+'"'
+        if (type in ["move", "copy"])
+          operation += ',"from":"'+paths[random.nextInt(paths.size())]+'"'
+        if (type in ["add", "replace", "test"])
+          operation += ',"value":'+values[random.nextInt(values.size())]
+        operation+'}'
+      }
+      JsonPatch jsonPatch = new JsonPatch('['+operations.join(',')+']')
+      JsonNode expected
+      try {
+        expected = jsonPatch.apply(document)
+      } catch (JsonPatchException e) {
+        return true
+      }
+      applied++
+      jsonPatch.optimize().apply(document) == expected
+    }
+    applied > 100
+  }
+  
+  def "Composed Json Patch Test"() {
+    when:
+    ComposedPatch composed = JsonPatch.compose(patches.collect { new JsonPatch(it) } as JsonPatch[])
+    
+    then:
+    composed.toString() == composedPatch
+    composed.getPreconditions()*.getDescription() == preconditions
+    
+    where:
+    patches                                                                                       |   composedPatch                                  |   preconditions
+    ['[{"op":"add","path":"/a","value":1}]', '[{"op":"replace","path":"/a","value":2}]']          |   '[{"op":"add","path":"/a","value":2}]'         |   []
+    ['[{"op":"replace","path":"/a/b","value":1}]', '[{"op":"add","path":"/c","value":1}]', '[{"op":"remove","path":"/a"}]'] | '[{"op":"remove","path":"/a"},{"op":"add","path":"/c","value":1}]' | ['"/a/b" exists']
+    ['[{"op":"add","path":"/a/1","value":1}]', '[{"op":"remove","path":"/a/1"}]']                 |   '[]'                                           |   ['"/a" is an array of at least 1 elements']
+    ['[{"op":"copy","from":"/x","path":"/y"}]', '[{"op":"replace","path":"/y","value":1}]']       |   '[{"op":"add","path":"/y","value":1}]'         |   ['"/x" exists']
+    ['[{"op":"replace","path":"/a","value":1}]', '[{"op":"remove","path":"/a"}]']                 |   '[{"op":"remove","path":"/a"}]'                |   ['"/a" exists']
+    ['[{"op":"replace","path":"","value":2}]', '[{"op":"replace","path":"","value":"s0"}]']       |   '[{"op":"replace","path":"","value":"s0"}]'    |   []
+    ['[{"op":"replace","path":"","value":1}]', '[{"op":"remove","path":""}]']                     |   '[{"op":"remove","path":""}]'                  |   []
+  }
+  
+  def "Composed Json Patch of root replaces gives the same result as the patch chain Test"() {
+    given:
+    ObjectMapper mapper = new ObjectMapper()
+    JsonNode document = mapper.readTree('{"a": 1}')
+    JsonNode second = mapper.readTree('{"b": [1, 2]}')
+    JsonDiff jsonDiff = new JsonDiff()
+    JsonPatch firstPatch = new JsonPatch((ArrayNode)jsonDiff.getDiff(document, mapper.readTree('[1]')))
+    JsonPatch secondPatch = new JsonPatch((ArrayNode)jsonDiff.getDiff(mapper.readTree('[1]'), second))
+    
+    when:
+    ComposedPatch composed = JsonPatch.compose(firstPatch, secondPatch)
+    
+    then:
+    composed.getPatchOperations().size() == 1
+    composed.apply(document) == secondPatch.apply(firstPatch.apply(document))
+    composed.apply(document) == second
+  }
+  
+  def "Composed Json Patch gives the same result as the patch chain Test"() {
+    given:
+    Random random = new Random(17)
+    ObjectMapper mapper = new ObjectMapper()
+    JsonNode document = mapper.readTree('{"a": {"b": 1, "c": [1, 2, 3]}, "d": [{"e": 1}], "f": "x"}')
+    def paths = ["/a", "/a/b", "/a/c", "/a/c/0", "/a/c/1", "/a/c/-", "/d", "/d/0", "/d/0/e", "/f", "/g", "/a/x"]
+    def values = ['1', '"x"', '{"e": 2}', '[1]', '{"b": 1, "c": []}']
+    def types = ["add", "remove", "replace", "move", "copy", "test"]
+    int applied = 0
+    
+    expect:
+    (1..3000).every {
+      def patches = (0..<(2 + random.nextInt(3))).collect {
+        def operations = (0..<(1 + random.nextInt(3))).collect {
+          String type = types[random.nextInt(types.size())]
+          String operation = '{"op":"'+type+'","path":"'+paths[random.nextInt(paths.size())]+'"'
+          if (type in ["move", "copy"])
+            operation += ',"from":"'+paths[random.nextInt(paths.size())]+'"'
+          if (type in ["add", "replace", "test"])
+            operation += ',"value":'+values[random.nextInt(values.size())]
+          operation+'}'
+        }
+        new JsonPatch('['+operations.join(',')+']')
+      }
+      ComposedPatch composed = JsonPatch.compose(patches as JsonPatch[])
+      JsonNode expected = document
+      try {
+        patches.each { expected = it.apply(expected) }
+      } catch (JsonPatchException e) {
+        //the composed patch may only succeed where the chain fails if it reports what it no longer checks
+        try {
+          composed.apply(document)
+        } catch (JsonPatchException composedFailure) {
+          return true
+        }
+        return !composed.getPreconditions().isEmpty()
+      }
+      applied++
+      composed.apply(document) == expected
+    }
+    applied > 100
+  }
+  
+  def "Inverse Json Patch Test"() {
+    given:
+    ObjectMapper mapper = new ObjectMapper()
+    JsonNode document = mapper.readTree('{"a": {"b": 1}, "c": [1, 2], "d": "x"}')
+    
+    when:
+    AppliedPatch applied = new JsonPatch(patch).applyWithInverse(document)
+    
+    then:
+    applied.getInverse().toString() == inverse
+    applied.getInverse().apply(applied.getResult()) == document
+    
+    where:
+    patch                                                                        |   inverse
+    '[{"op":"add","path":"/a/e","value":2},{"op":"add","path":"/c/-","value":3}]'|   '[{"op":"remove","path":"/c/2"},{"op":"remove","path":"/a/e"}]'
+    '[{"op":"replace","path":"/d","value":"y"},{"op":"remove","path":"/c/0"}]'   |   '[{"op":"add","path":"/c/0","value":1},{"op":"replace","path":"/d","value":"x"}]'
+    '[{"op":"move","from":"/a/b","path":"/d"}]'                                  |   '[{"op":"move","from":"/d","path":"/a/b"},{"op":"add","path":"/d","value":"x"}]'
+    '[{"op":"copy","from":"/c","path":"/a/b"},{"op":"test","path":"/d","value":"x"}]' | '[{"op":"replace","path":"/a/b","value":1}]'
+  }
+  
+  def "Inverse Json Patch of moves which shift the path or remove a \"-\" member Test"() {
+    given:
+    ObjectMapper mapper = new ObjectMapper()
+    JsonNode document = mapper.readTree(source)
+    JsonNode copy = JsonNodeUtils.deepCopy(document)
+    
+    when:
+    AppliedPatch applied = new JsonPatch(patch).applyWithInverse(document)
+    
+    then:
+    applied.getInverse().toString() == inverse
+    applied.getInverse().apply(applied.getResult()) == document
+    
+    when: "a later operation fails, the move is rolled back"
+    new JsonPatch(patch.replace(']', ',{"op":"remove","path":"/9"}]')).applyInPlaceWithInverse(copy)
+    
+    then:
+    thrown(JsonPatchException)
+    copy == document
+    
+    where:
+    source                              |   patch                                         |   inverse
+    '["s0",[],[{"a":0,"b":"s1"}]]'      |   '[{"op":"move","from":"/0","path":"/1/-"}]'   |   '[{"op":"move","from":"/1/1","path":"/0"}]'
+    '[1,{"a":["s1",2]},{"a":["s1"]}]'   |   '[{"op":"move","from":"/0","path":"/1/a/-"}]' |   '[{"op":"move","from":"/1/a/1","path":"/0"}]'
+    '[0,{"x":1},{"m":5}]'               |   '[{"op":"move","from":"/0","path":"/1/m"}]'   |   '[{"op":"move","from":"/1/m","path":"/0"},{"op":"add","path":"/2/m","value":5}]'
+    '{"a":[0,[1],[2]]}'                 |   '[{"op":"move","from":"/a/0","path":"/a/1/0"}]' | '[{"op":"move","from":"/a/1/0","path":"/a/0"}]'
+    '{"-":1,"a":[0]}'                   |   '[{"op":"move","from":"/-","path":"/a/0"}]'   |   '[{"op":"remove","path":"/a/0"},{"op":"replace","path":"/-","value":1}]'
+    '{"-":1,"a":[0]}'                   |   '[{"op":"remove","path":"/-"}]'               |   '[{"op":"replace","path":"/-","value":1}]'
+  }
+  
+  def "Inverse Json Patch undoes random patches Test"() {
+    given:
+    Random random = new Random(23)
+    ObjectMapper mapper = new ObjectMapper()
+    JsonNode document = mapper.readTree('{"a": {"b": 1, "c": [1, 2, 3]}, "d": [{"e": 1}], "f": "x"}')
+    def paths = ["", "/a", "/a/b", "/a/c", "/a/c/0", "/a/c/1", "/a/c/-", "/d", "/d/0", "/d/-", "/d/0/e", "/f", "/g", "/a/x"]
+    def values = ['1', '"x"', '{"e": 2}', '[1]', '{"b": 1, "c": []}']
+    def types = ["add", "remove", "replace", "move", "copy", "test"]
+    int applied = 0
+    
+    expect:
+    (1..3000).every {
+      def operations = (0..<(1 + random.nextInt(5))).collect {
+        String type = types[random.nextInt(types.size())]
+        String operation = '{"op":"'+type+'","path":"'+paths[random.nextInt(paths.size())]+'"'
+        if (type in ["move", "copy"])
+          operation += ',"from":"'+paths[random.nextInt(paths.size())]+'"'
+        if (type in ["add", "replace", "test"])
+          operation += ',"value":'+values[random.nextInt(values.size())]
+        operation+'}'
+      }
+      JsonPatch jsonPatch = new JsonPatch('['+operations.join(',')+']')
+      JsonNode copy = JsonNodeUtils.deepCopy(document)
+      AppliedPatch result
+      try {
+        result = jsonPatch.applyInPlaceWithInverse(copy)
+      } catch (JsonPatchException e) {
+        //a failed patch leaves the document as it was
+        return copy == document
+      }
+      applied++
+      result.getInverse().apply(result.getResult()) == document
+    }
+    applied > 100
+  }
+  
+  def "Json Patch applied on a batch of documents"() {
+    given:
+    ObjectMapper mapper = new ObjectMapper()
+    JsonPatch jsonPatch = new JsonPatch('[{"op": "replace", "path": "/tenant/port", "value": 8443}]')
+    def documents = (0..<200).collect { mapper.readTree(it % 10 == 0 ? '{"other": {}}' : '{"tenant": {"id": '+it+', "port": 80}}') }
+    
+    when:
+    List<PatchResult> results = jsonPatch.applyAll(documents, executor)
+    
+    then:
+    results.size() == 200
+    results.findAll { !it.isSuccess() }.size() == 20
+    results[0].getFailure() instanceof JsonPatchException
+    results[1].getResult().toString() == '{"tenant":{"id":1,"port":8443}}'
+    results[199].getResult().path("tenant").path("id").asInt() == 199
+    documents[1].toString() == '{"tenant":{"id":1,"port":80}}'
+    
+    where:
+    executor << [ForkJoinPool.commonPool(), Executors.newFixedThreadPool(4)]
+  }
+  
+  def "Json Patch applied on a batch with the default executor"() {
+    expect:
+    new JsonPatch('[{"op": "add", "path": "/a", "value": 1}]').applyAll([new ObjectMapper().readTree('{}')])*.getResult()*.toString() == ['{"a":1}']
+  }
+  
+  def "Json Patch applied on bytes, buffers, streams and files"() {
+    given:
+    Path sourceFile = Paths.get(sampleJsonDir+"sample-topology.json")
+    JsonPatch jsonPatch = new JsonPatch(Paths.get(sampleJsonDir+"patch-pass.json"))
+    byte[] source = Files.readAllBytes(sourceFile)
+    ByteBuffer directSource = ByteBuffer.allocateDirect(source.length).put(source)
+    directSource.flip()
+    ByteArrayOutputStream output = new ByteArrayOutputStream()
+    ByteArrayOutputStream streamingOutput = new ByteArrayOutputStream()
+    String expected = getPatchAsJsonString("patchOutput.json")
+    
+    when:
+    jsonPatch.apply(sourceFile, output)
+    jsonPatch.applyStreaming(sourceFile, streamingOutput)
+    
+    then:
+    jsonPatch.apply(source).toString() == expected
+    jsonPatch.apply(ByteBuffer.wrap(source)).toString() == expected
+    jsonPatch.apply(directSource).toString() == expected
+    directSource.remaining() == source.length
+    jsonPatch.apply(new ByteArrayInputStream(source)).toString() == expected
+    jsonPatch.apply(sourceFile).toString() == expected
+    output.toString("UTF-8") == expected
+    streamingOutput.toString("UTF-8") == expected
+    new JsonPatch(getPatchAsJsonString("patch-pass.json").getBytes("UTF-8")).apply(source).toString() == expected
+  }
+  
+  def "Binary Json Patch round trip Test"() {
+    given:
+    JsonPatch jsonPatch = new JsonPatch(patch)
+    byte[] binary = BinaryPatchCodec.encode(jsonPatch)
+    
+    expect:
+    BinaryPatchCodec.decode(binary).toString() == jsonPatch.toString()
+    BinaryPatchCodec.decode(new ByteArrayInputStream(binary)).toString() == jsonPatch.toString()
+    binary.length < jsonPatch.toString().getBytes("UTF-8").length
+    
+    where:
+    patch << [getPatchAsJsonString("patch-pass.json"),
+      getPatchAsJsonString("topology-diff-output.json"),
+      '[{"op":"add","path":"/a~1b/~0/01","value":[1,-2,3000000000,12345678901234567890123,1.5,1.25E300,null,true,false,"t\u00e9xt",{"a~1b":{}}]},' +
+        '{"op":"move","from":"","path":"/"},{"op":"copy","from":"/x/-","path":"relative"},{"op":"remove","path":"/a"},' +
+        '{"op":"test","path":"/a","value":{"nested":[{"nested":"deep"}]}}]']
+  }
+  
+  def "Binary Json Patch applies like its text form"() {
+    given:
+    JsonPatch jsonPatch = new JsonPatch(getPatchAsJsonString("patch-pass.json"))
+    
+    expect:
+    BinaryPatchCodec.decode(BinaryPatchCodec.encode(jsonPatch)).apply(topologyDocument) == jsonPatch.apply(topologyDocument)
+  }
+  
+  def "Negative Binary Json Patch Test"() {
+    when:
+    BinaryPatchCodec.decode(bytes as byte[])
+    
+    then:
+    thrown(InvalidJsonPatchException)
+    
+    where:
+    bytes << [[], '[{"op":"remove","path":"/a"}]'.getBytes("UTF-8"),
+      BinaryPatchCodec.encode(new JsonPatch('[{"op":"add","path":"/a/b","value":{"c":1}}]'))[0..-3]]
+  }
+  
+  def "Json Patch metrics are recorded by the registered listener"() {
+    given:
+    PatchStatistics statistics = new PatchStatistics()
+    JsonPatch jsonPatch = new JsonPatch('[{"op": "add", "path": "/topology/extra", "value": {"a": []}},' +
+        '{"op": "test", "path": "/topology/extra/a", "value": []},' +
+        '{"op": "replace", "path": "/topology/extra/a", "value": 1}]')
+    
+    when:
+    MetricsUtils.setMetrics(statistics)
+    jsonPatch.apply(topologyDocument)
+    applyJsonPatch("patch-fail.json", topologyDocument)
+    
+    then:
+    thrown(JsonPatchException)
+    statistics.getApplied(PatchOperationType.add) >= 1
+    statistics.getApplied(PatchOperationType.test) >= 1
+    statistics.getApplied(PatchOperationType.replace) >= 1
+    statistics.getLatencies(PatchOperationType.add).getPercentile(99) > 0
+    PatchOperationType.values().sum { statistics.getFailures(it) } == 1
+    statistics.getNodesCloned() > 0
+    
+    when:
+    long applied = statistics.getApplied()
+    new JsonDiff().getDiff(topologyDocument, jsonPatch.apply(topologyDocument))
+    MetricsUtils.setMetrics(null)
+    jsonPatch.apply(topologyDocument)
+    
+    then:
+    statistics.getApplied() == applied + 3
+    statistics.getDiffNodesVisited() > 0
+    
+    cleanup:
+    MetricsUtils.setMetrics(null)
+  }
+  
+  def "Patch Cache Test"() {
+    given:
+    PatchCache patchCache = new PatchCache(2)
+    String first = '[{"op": "replace", "path": "/topology/LBR/port", "value": "8443"}]'
+    String second = '[{"op": "add", "path": "/topology/LBR/note", "value": {"text": "say \\"hi\\""}}]'
+    byte[] third = '[{"op": "remove", "path": "/topology/webservers/0"}]'.getBytes("UTF-8")
+    
+    when:
+    JsonPatch firstPatch = patchCache.get(first)
+    JsonPatch secondPatch = patchCache.get(second)
+    
+    then:
+    patchCache.get(new String(first)).is(firstPatch)
+    patchCache.get(second).is(secondPatch)
+    firstPatch.apply(topologyDocument) == new JsonPatch(first).apply(topologyDocument)
+    secondPatch.apply(topologyDocument).path("topology").path("LBR").path("note").path("text").getTextValue() == 'say "hi"'
+    patchCache.getHits() == 2
+    patchCache.getMisses() == 2
+    
+    when: "the least recently used patch is evicted"
+    JsonPatch thirdPatch = patchCache.get(third)
+    third[0] = (byte)' '
+    
+    then:
+    patchCache.size() == 2
+    patchCache.getEvictions() == 1
+    patchCache.get('[{"op": "remove", "path": "/topology/webservers/0"}]'.getBytes("UTF-8")).is(thirdPatch)
+    patchCache.get(second).is(secondPatch)
+    !patchCache.get(first).is(firstPatch)
+    patchCache.getEvictions() == 2
+    
+    when:
+    patchCache.get('[{"op": "rename", "path": "/a"}]')
+    
+    then:
+    thrown(InvalidJsonPatchException)
+    patchCache.size() == 2
+    patchCache.getMisses() == 5
+    PatchOperationType.isValidOperationType("move")
+    !PatchOperationType.isValidOperationType("rename")
+    PatchOperationType.forName("copy") == PatchOperationType.copy
+    PatchOperationType.forName(null) == null
+  }
+  
   def applyJsonPatch(patch, inputDocument) {
     JsonPatch jsonPatch = new JsonPatch(getPatchAsJsonString(patch))
     jsonPatch.apply(inputDocument).toString()
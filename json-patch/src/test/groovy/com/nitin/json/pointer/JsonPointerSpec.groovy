@@ -41,6 +41,46 @@ class JsonPointerSpec extends Specification {
     "/topology/appservers/1/protocols/2"|   "t3protocol.json"
   }
   
+  def "Compiled Json pointer test"() {
+    given:
+    JsonNode document = new ObjectMapper().readTree('{"a/b": {"m~n": [10, 20]}}')
+    JsonPointer ptr = JsonPointer.compile("/a~1b/m~0n/1")
+    
+    expect:
+    JsonPointer.compile("/a~1b/m~0n/1").is(ptr)
+    ptr.getValue(document).asInt() == 20
+    ptr.getTokenCount() == 3
+    ptr.getReferenceToken(0) == "a/b"
+    ptr.getReferenceToken(1) == "m~n"
+    ptr.isLastTokenArrayIndex()
+    ptr.getLastArrayIndex() == 1
+    ptr.parent().toString() == "/a~1b/m~0n"
+    ptr.parent().getValue(document).size() == 2
+    ptr.getParentNode(document).isArray()
+    ptr.parent().parent().parent() == JsonPointer.EMPTY
+  }
+  
+  def "Json pointer set test"() {
+    given:
+    def pointers = ["", "/topology/LBR/host", "/topology/appservers/1", "/topology/appservers/1/protocols/2",
+      "/topology/appservers/01/host", "/topology/appservers/9/host", "/topology/5", "/topology/LBR/host/x", "/missing"]
+    
+    when:
+    Map<JsonPointer, JsonNode> values = new JsonPointerSet(pointers as String[]).getValues(topologyDocument)
+    
+    then:
+    values.keySet()*.toString() == pointers
+    pointers.every { ptr ->
+      JsonNode value = values.get(JsonPointer.compile(ptr))
+      try {
+        return value == new JsonPointer(ptr).getValue(topologyDocument)
+      } catch (JsonPointerException e) {
+        return value.isMissingNode()
+      }
+    }
+    values.values().count { it.isMissingNode() } == 4
+  }
+  
   def getJsonPointerValue(jsonPointer) {
     JsonNode ptrOutput = new JsonPointer(jsonPointer).getValue(topologyDocument);
     println "JsonPointer $jsonPointer has been resolved to $ptrOutput"
@@ -0,0 +1,153 @@
+package com.nitin.json.store
+
+import java.io.File
+import java.io.RandomAccessFile
+import java.nio.file.Files
+import java.nio.file.Path
+import org.codehaus.jackson.JsonNode
+import org.codehaus.jackson.map.ObjectMapper
+import spock.lang.Specification
+import com.nitin.json.patch.JsonPatch
+import com.nitin.json.patch.exception.JsonPatchException
+import com.nitin.json.store.exception.JsonStoreException
+
+class VersionedStoreSpec extends Specification {
+  private static String sampleJsonDir = "src"+File.separator+"test"+File.separator+"resources"+File.separator;
+  ObjectMapper mapper = new ObjectMapper()
+
+  def "Versioned Store round trip Test"() {
+    given:
+    Path directory = Files.createTempDirectory("json-store")
+    JsonNode source = mapper.readTree(getFile("sample-topology.json"))
+    JsonNode other = mapper.readTree(getFile("other-topology.json"))
+    JsonPatch patch = new JsonPatch('[{"op": "replace", "path": "/topology/LBR/port", "value": "8443"}]')
+    VersionedStore store = new VersionedStore(directory, 3)
+    List<JsonNode> versions = [null]
+
+    when:
+    store.put("topology", source)
+    versions << source
+    for (int i = 0; i < 10; i++) {
+      JsonNode next = (i % 2 == 0 ? other : source)
+      store.put("topology", next)
+      versions << next
+      store.append("topology", new JsonPatch('[{"op": "add", "path": "/version", "value": '+i+'}]'))
+      versions << patchCopy(versions.last(), '[{"op": "add", "path": "/version", "value": '+i+'}]')
+    }
+    int unchanged = store.put("topology", versions.last())
+    store.compact()
+
+    then:
+    unchanged == 21
+    store.getLatestVersion("topology") == 21
+    store.getLatestVersion("other") == 0
+    store.get("other", 1) == null
+    store.get("topology", 22) == null
+    (1..21).every { store.get("topology", it) == versions[it] }
+    store.getLatest("topology") == versions[21]
+
+    when:
+    store.append("topology", new JsonPatch('[{"op": "replace", "path": "/version", "value": -1}, {"op": "remove", "path": "/missing/0"}]'))
+
+    then:
+    thrown(JsonPatchException)
+    store.getLatestVersion("topology") == 21
+    store.getLatest("topology") == versions[21]
+
+    when:
+    store.append("other", patch)
+
+    then:
+    thrown(JsonStoreException)
+
+    when:
+    store.close()
+    VersionedStore reopened = new VersionedStore(directory, 3)
+
+    then:
+    reopened.keys() == ["topology"] as Set
+    reopened.getLatestVersion("topology") == 21
+    (1..21).every { reopened.get("topology", it) == versions[it] }
+    reopened.append("topology", patch) == 22
+    reopened.getLatest("topology").get("topology").get("LBR").get("port").getTextValue() == "8443"
+
+    cleanup:
+    reopened?.close()
+    directory.toFile().deleteDir()
+  }
+
+  def "Versioned Store of strings with quotes and backslashes Test"() {
+    given:
+    Path directory = Files.createTempDirectory("json-store")
+    List<JsonNode> versions = [null] + [
+      '{"msg": "plain"}',
+      '{"msg": "C:\\\\temp"}',
+      '{"msg": "say \\"hi\\""}',
+      '{"msg": "\\"x\\""}',
+      '{"msg": "{\\"a\\": 1}", "list": ["\\\\", "\\"[1]\\""]}',
+      '{"msg": "[1, 2]", "list": ["\\"\\\\\\""]}'
+    ].collect { mapper.readTree(it) }
+    VersionedStore store = new VersionedStore(directory, 2)
+
+    when:
+    List<Integer> numbers = versions.tail().collect { store.put("k", it) }
+
+    then:
+    numbers == (1..6).toList()
+    (1..6).every { store.get("k", it) == versions[it] }
+
+    when:
+    store.close()
+    VersionedStore reopened = new VersionedStore(directory, 2)
+
+    then:
+    (1..6).every { reopened.get("k", it) == versions[it] }
+    reopened.getLatest("k") == versions[6]
+
+    cleanup:
+    reopened?.close()
+    directory.toFile().deleteDir()
+  }
+
+  def "Versioned Store recovery Test"() {
+    given:
+    Path directory = Files.createTempDirectory("json-store")
+    VersionedStore store = new VersionedStore(directory)
+    store.put("a", mapper.readTree('{"x": 1}'))
+    store.put("a", mapper.readTree('{"x": 2}'))
+    store.put("b", mapper.readTree('[1, 2]'))
+    store.close()
+    long size = Files.size(directory.resolve("journal.bin"))
+
+    when: "the last record is corrupt, as after a crash while writing it"
+    RandomAccessFile file = new RandomAccessFile(directory.resolve("journal.bin").toFile(), "rw")
+    byte[] bytes = new byte[(int)size]
+    file.readFully(bytes)
+    int last = bytes.length - 1
+    while (bytes[last] == 0) {
+      last--
+    }
+    file.seek(last)
+    file.write(bytes[last] ^ 0xFF)
+    file.close()
+    VersionedStore reopened = new VersionedStore(directory)
+
+    then:
+    reopened.keys() == ["a"] as Set
+    reopened.get("a", 2) == mapper.readTree('{"x": 2}')
+    reopened.put("b", mapper.readTree('[3]')) == 1
+    reopened.getLatest("b") == mapper.readTree('[3]')
+
+    cleanup:
+    reopened?.close()
+    directory.toFile().deleteDir()
+  }
+
+  def patchCopy(JsonNode node, String patch) {
+    new JsonPatch(patch).apply(node)
+  }
+
+  def getFile(file) {
+    new File(sampleJsonDir+file).text
+  }
+}